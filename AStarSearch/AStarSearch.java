@@ -1,10 +1,9 @@
 package mycontroller.AStarSearch;
 
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.Map;
 
 import mycontroller.HashMapTile;
 import mycontroller.TilesChecker;
@@ -18,52 +17,42 @@ import tiles.MapTile;
  * @author Marcelo Surriabre
  */
 public class AStarSearch {
-    private static int DEFAULT_ROAD_COST = 10; // Horizontal - Vertical Cost
-    private static int DEFAULT_LAVA_COST = 200;
+    static final int DEFAULT_ROAD_COST = 10; // Horizontal - Vertical Cost
+    static final int DEFAULT_LAVA_COST = 200;
     private int hvCost;
-    private Node[][] searchArea;
-    private PriorityQueue<Node> openList;
-    private List<Node> closedList;
+    private SearchContext context;
     private Node initialNode;
     private Node finalNode;
-    private HashMap<Coordinate, HashMapTile> map;
+    private Map<Coordinate, HashMapTile> map;
     private ArrayList<MapTile> tilesToAvoid;
+    private int expandedNodes;
+    private LandmarkHeuristic landmarks = null;
+    private double weight = 1.0;
+    private double focalEpsilon = 0.0;
+    private long focalBound;
+    private double suboptimalityBound = 1.0;
 
-    public AStarSearch(int rows, int cols, Node initialNode, Node finalNode, int hvCost,
-                       HashMap<Coordinate, HashMapTile> map, ArrayList<MapTile> tilesToAvoid) {
+    public AStarSearch(SearchContext context, Node initialNode, Node finalNode, int hvCost,
+                       Map<Coordinate, HashMapTile> map, ArrayList<MapTile> tilesToAvoid) {
         this.hvCost = hvCost;
         this.map = map;
+        this.context = context;
         setInitialNode(initialNode);
         setFinalNode(finalNode);
-        this.searchArea = new Node[rows][cols];
-        this.openList = new PriorityQueue<Node>(new Comparator<Node>() {
-            @Override
-            public int compare(Node node0, Node node1) {
-                return node0.getF() < node1.getF() ? -1 : node0.getF() > node1.getF() ? 1 : 0;
-            }
-        });
-        setNodes();
-        this.closedList = new ArrayList<>();
         this.tilesToAvoid = tilesToAvoid;
     }
 
-    public AStarSearch(int rows, int cols, Node initialNode, Node finalNode, HashMap<Coordinate, HashMapTile> map,
-                       ArrayList<MapTile> tilesToAvoid) {
-    	this(rows, cols, initialNode, finalNode, DEFAULT_ROAD_COST, map, tilesToAvoid);
+    public AStarSearch(SearchContext context, Node initialNode, Node finalNode,
+                       Map<Coordinate, HashMapTile> map, ArrayList<MapTile> tilesToAvoid) {
+        this(context, initialNode, finalNode, DEFAULT_ROAD_COST, map, tilesToAvoid);
     }
 
     /**
-     * set the each tile in the map as a node 
+     * one-off search with its own context; prefer sharing a SearchContext when searching repeatedly
      */
-    private void setNodes() {
-        for (int i = 0; i < searchArea.length; i++) {
-            for (int j = 0; j < searchArea[0].length; j++) {
-            	HashMapTile hashMapTile = map.get(new Coordinate(i,j));
-                Node node = new Node(i, j, hashMapTile.getTile());
-                node.calculateHeuristic(getFinalNode());
-                this.searchArea[i][j] = node;
-            }
-        }
+    public AStarSearch(int rows, int cols, Node initialNode, Node finalNode, Map<Coordinate, HashMapTile> map,
+                       ArrayList<MapTile> tilesToAvoid) {
+        this(new SearchContext(rows, cols), initialNode, finalNode, DEFAULT_ROAD_COST, map, tilesToAvoid);
     }
 
     /**
@@ -71,136 +60,254 @@ public class AStarSearch {
      * @return new ArrayList
      */
     public List<Node> findPath() {
-        openList.add(initialNode);
-        while (!isEmpty(openList)) {
-            Node currentNode = openList.poll();
-            closedList.add(currentNode);
-            if (isFinalNode(currentNode)) {
-                return getPath(currentNode);
+        context.beginSearch();
+        expandedNodes = 0;
+        suboptimalityBound = 1.0;
+        int startId = context.getCellId(initialNode.getX(), initialNode.getY());
+        int finalId = context.getCellId(finalNode.getX(), finalNode.getY());
+        touch(startId);
+        context.setPathData(startId, SearchContext.NO_PARENT, 0);
+        if (focalEpsilon > 0) {
+            return findFocalPath(startId, finalId);
+        }
+        IndexedMinHeap openList = context.getOpenList();
+        open(startId);
+
+        while (!openList.isEmpty()) {
+            int currentId = openList.poll();
+            context.close(currentId);
+            expandedNodes++;
+            if (currentId == finalId) {
+                if (weight > 1.0) {
+                    // g + h of every open node is still a lower bound on the optimal cost
+                    long lowerBound = context.getG(currentId);
+                    for (int slot = 0; slot < openList.size(); slot++) {
+                        lowerBound = Math.min(lowerBound, context.getF(openList.get(slot)));
+                    }
+                    suboptimalityBound = getRatio(context.getG(currentId), lowerBound);
+                }
+                return getPath(currentId);
             } else {
-                addAdjacentNodes(currentNode);
+                addAdjacentNodes(currentId);
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * A*-epsilon: expand the open node nearest the goal among those with f within (1 + epsilon) of the lowest f
+     * @param startId
+     * @param finalId
+     * @return path as a list <Node>
+     */
+    private List<Node> findFocalPath(int startId, int finalId) {
+        IndexedMinHeap openList = context.getOpenList();
+        IndexedMinHeap focalList = context.getFocalList();
+        IndexedMinHeap waitingList = context.getWaitingList();
+        focalBound = 0;
+        open(startId);
+
+        while (!openList.isEmpty()) {
+            long lowerBound = openList.peekKey();
+            long bound = (long) Math.floor(lowerBound * (1.0 + focalEpsilon));
+            if (bound > focalBound) {
+                focalBound = bound;
+                while (!waitingList.isEmpty() && waitingList.peekKey() <= focalBound) {
+                    int id = waitingList.poll();
+                    focalList.insertOrUpdate(id, context.getH(id));
+                }
+            }
+            int currentId = focalList.poll();
+            openList.remove(currentId);
+            context.close(currentId);
+            expandedNodes++;
+            if (currentId == finalId) {
+                suboptimalityBound = getRatio(context.getG(currentId), lowerBound);
+                return getPath(currentId);
             }
+            addAdjacentNodes(currentId);
         }
         return new ArrayList<>();
     }
 
     /**
-     * set the current node as the parent and return the new path
-     * @param currentNode
+     * queue a node, or requeue it after its g improved
+     * @param id
+     */
+    private void open(int id) {
+        if (focalEpsilon > 0) {
+            long f = context.getF(id);
+            context.getOpenList().insertOrUpdate(id, f);
+            IndexedMinHeap focalList = context.getFocalList();
+            IndexedMinHeap waitingList = context.getWaitingList();
+            if (focalList.contains(id)) {
+                return;
+            }
+            if (f <= focalBound) {
+                if (waitingList.contains(id)) {
+                    waitingList.remove(id);
+                }
+                focalList.insertOrUpdate(id, context.getH(id));
+            } else {
+                waitingList.insertOrUpdate(id, f);
+            }
+        } else if (weight > 1.0) {
+            context.getOpenList().insertOrUpdate(id,
+                    context.getG(id) + (long) Math.floor(weight * context.getH(id)));
+        } else {
+            context.getOpenList().insertOrUpdate(id, context.getF(id));
+        }
+    }
+
+    private static double getRatio(long cost, long lowerBound) {
+        return lowerBound <= 0 || cost <= lowerBound ? 1.0 : (double) cost / lowerBound;
+    }
+
+    /**
+     * walk the parent ids back to the start and build the path as nodes
+     * @param currentId
      * @return path as a list <Node>
      */
-    private List<Node> getPath(Node currentNode) {
+    private List<Node> getPath(int currentId) {
         List<Node> path = new ArrayList<Node>();
-        path.add(currentNode);
-        Node parent;
-        while ((parent = currentNode.getParent()) != null) {
-            path.add(0, parent);
-            currentNode = parent;
+        for (int id = currentId; id != SearchContext.NO_PARENT; id = context.getParent(id)) {
+            path.add(createNode(id));
+        }
+        Collections.reverse(path);
+        Node parent = null;
+        for (Node node : path) {
+            node.setParent(parent);
+            parent = node;
         }
         return path;
     }
 
+    private Node createNode(int id) {
+        Node node;
+        if (context.getParent(id) == SearchContext.NO_PARENT) {
+            node = initialNode;
+        } else {
+            int x = context.getX(id);
+            int y = context.getY(id);
+            node = new Node(x, y, context.lookup(map, x, y).getTile());
+        }
+        node.setG(context.getG(id));
+        node.setH(context.getH(id));
+        node.setF(context.getF(id));
+        return node;
+    }
+
     /**
      * A helper method to call all three addAdjacentROw
-     * @param currentNode
+     * @param currentId
      */
-    private void addAdjacentNodes(Node currentNode) {
-        addAdjacentUpperRow(currentNode);
-        addAdjacentMiddleRow(currentNode);
-        addAdjacentLowerRow(currentNode);
+    private void addAdjacentNodes(int currentId) {
+        int cost = DEFAULT_ROAD_COST;
+        int row = context.getX(currentId);
+        int col = context.getY(currentId);
+
+        if (TilesChecker.checkForLavaTrap(context.lookup(map, row, col).getTile())) {
+            cost = DEFAULT_LAVA_COST;
+        }
+
+        addAdjacentUpperRow(currentId, row, col, cost);
+        addAdjacentMiddleRow(currentId, row, col, cost);
+        addAdjacentLowerRow(currentId, row, col, cost);
     }
 
     /**
      * add lower row
-     * @param currentNode
      */
-    private void addAdjacentLowerRow(Node currentNode) {
-        int row = currentNode.getX();
-        int col = currentNode.getY();
+    private void addAdjacentLowerRow(int currentId, int row, int col, int cost) {
         int lowerRow = row + 1;
-        if (lowerRow < getSearchArea().length) {
-            if (col - 1 >= 0) {
-                //checkNode(currentNode, col - 1, lowerRow, getDiagonalCost()); // Comment this line if diagonal movements are not allowed
-            }
-            if (col + 1 < getSearchArea()[0].length) {
-                //checkNode(currentNode, col + 1, lowerRow, getDiagonalCost()); // Comment this line if diagonal movements are not allowed
-            }
-            checkNode(currentNode, col, lowerRow);
+        if (lowerRow < context.getRows()) {
+            checkNode(currentId, col, lowerRow, cost);
         }
     }
 
-    /** add middle row
- 	 *
-     * @param currentNode
+    /**
+     * add middle row
      */
-    private void addAdjacentMiddleRow(Node currentNode) {
-        int row = currentNode.getX();
-        int col = currentNode.getY();
-        int middleRow = row;
+    private void addAdjacentMiddleRow(int currentId, int row, int col, int cost) {
         if (col - 1 >= 0) {
-            checkNode(currentNode, col - 1, middleRow);
+            checkNode(currentId, col - 1, row, cost);
         }
-        if (col + 1 < getSearchArea()[0].length) {
-            checkNode(currentNode, col + 1, middleRow);
+        if (col + 1 < context.getCols()) {
+            checkNode(currentId, col + 1, row, cost);
         }
     }
 
     /**
      * add upper row
-     * @param currentNode
      */
-    private void addAdjacentUpperRow(Node currentNode) {
-        int row = currentNode.getX();
-        int col = currentNode.getY();
+    private void addAdjacentUpperRow(int currentId, int row, int col, int cost) {
         int upperRow = row - 1;
         if (upperRow >= 0) {
-            if (col - 1 >= 0) {
-                //checkNode(currentNode, col - 1, upperRow, getDiagonalCost()); // Comment this if diagonal movements are not allowed
-            }
-            if (col + 1 < getSearchArea()[0].length) {
-                //checkNode(currentNode, col + 1, upperRow, getDiagonalCost()); // Comment this if diagonal movements are not allowed
-            }
-            checkNode(currentNode, col, upperRow);
+            checkNode(currentId, col, upperRow, cost);
         }
     }
 
-    /** 
+    /**
      * check the node and calculate its cost of the path
      * and decide whether there is another cheaper path
-     * @param currentNode
+     * @param currentId
      * @param col
      * @param row
+     * @param cost of leaving the current node
      */
-    private void checkNode(Node currentNode, int col, int row) {
-    	int cost = DEFAULT_ROAD_COST;
-    	
-		if (TilesChecker.checkForLavaTrap(currentNode.getTile())) {
-			cost = DEFAULT_LAVA_COST;
-		}
-    		
-        Node adjacentNode = getSearchArea()[row][col];
-        if (!adjacentNode.isTileToAvoid(tilesToAvoid) && !getClosedList().contains(adjacentNode)) {
-            if (!getOpenList().contains(adjacentNode)) {
-                adjacentNode.setNodeData(currentNode, cost);
-                getOpenList().add(adjacentNode);
-            } else {
-                boolean changed = adjacentNode.checkBetterPath(currentNode, cost);
-                if (changed) {
-                    // Remove and Add the changed node, so that the PriorityQueue can sort again its
-                    // contents with the modified "finalCost" value of the modified node
-                    getOpenList().remove(adjacentNode);
-                    getOpenList().add(adjacentNode);
-                }
+    private void checkNode(int currentId, int col, int row, int cost) {
+        int adjacentId = context.getCellId(row, col);
+        // bounded searches expand nodes out of f order, so a closed node may still get a cheaper g
+        boolean reopenable = (weight > 1.0 || focalEpsilon > 0) && context.isTouched(adjacentId);
+        if (context.isClosed(adjacentId) && !reopenable) {
+            return;
+        }
+        if (!context.isTouched(adjacentId)) {
+            if (isTileToAvoid(context.lookup(map, row, col).getTile())) {
+                // closing it means the tile is only looked up once per search
+                context.close(adjacentId);
+                return;
             }
+            touch(adjacentId);
+        }
+
+        int gCost = context.getG(currentId) + cost;
+        if (gCost < context.getG(adjacentId)) {
+            if (context.isClosed(adjacentId)) {
+                context.reopen(adjacentId);
+            }
+            context.setPathData(adjacentId, currentId, gCost);
+            // inserts the node, or decreases its key if it is already open
+            open(adjacentId);
         }
     }
 
-    private boolean isFinalNode(Node currentNode) {
-        return currentNode.equals(finalNode);
+    private void touch(int id) {
+        if (landmarks != null) {
+            context.touch(id, landmarks.estimate(id, context.getCellId(finalNode.getX(), finalNode.getY())));
+            return;
+        }
+        int x = context.getX(id);
+        int y = context.getY(id);
+        // in cost units, so the heuristic is as large as it can be without overestimating a road step
+        context.touch(id, (Math.abs(finalNode.getX() - x) + Math.abs(finalNode.getY() - y)) * DEFAULT_ROAD_COST);
     }
 
-    private boolean isEmpty(PriorityQueue<Node> openList) {
-        return openList.size() == 0;
+    /**
+     * use landmark bounds as the heuristic instead of plain Manhattan distance
+     * @param landmarks built on a grid of the same size that avoids the same tiles, or null to turn it off
+     */
+    public void setLandmarkHeuristic(LandmarkHeuristic landmarks) {
+        this.landmarks = landmarks;
+    }
+
+    private boolean isTileToAvoid(MapTile tile) {
+        for (MapTile tileToAvoid : tilesToAvoid) {
+            if (TilesChecker.checkForTileToAvoid(tileToAvoid, tile)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public Node getInitialNode() {
@@ -219,36 +326,63 @@ public class AStarSearch {
         this.finalNode = finalNode;
     }
 
-    public Node[][] getSearchArea() {
-        return searchArea;
+    public SearchContext getContext() {
+        return context;
+    }
+
+    public int getHvCost() {
+        return hvCost;
     }
 
-    public void setSearchArea(Node[][] searchArea) {
-        this.searchArea = searchArea;
+    public void setHvCost(int hvCost) {
+        this.hvCost = hvCost;
     }
 
-    public PriorityQueue<Node> getOpenList() {
-        return openList;
+    /**
+     * trade optimality for speed with f = g + weight * h, the path costs at most weight times the optimum
+     * @param weight 1 for plain A*
+     */
+    public void setWeight(double weight) {
+        if (weight < 1.0) {
+            throw new IllegalArgumentException("weight must be at least 1: " + weight);
+        }
+        this.weight = weight;
     }
 
-    public void setOpenList(PriorityQueue<Node> openList) {
-        this.openList = openList;
+    public double getWeight() {
+        return weight;
     }
 
-    public List<Node> getClosedList() {
-        return closedList;
+    /**
+     * search with a focal list instead, the path costs at most (1 + epsilon) times the optimum
+     * the weight is ignored while epsilon is above 0
+     * @param epsilon 0 for plain A*
+     */
+    public void setFocalEpsilon(double epsilon) {
+        if (epsilon < 0.0) {
+            throw new IllegalArgumentException("epsilon must not be negative: " + epsilon);
+        }
+        this.focalEpsilon = epsilon;
     }
 
-    public void setClosedList(List<Node> closedList) {
-        this.closedList = closedList;
+    public double getFocalEpsilon() {
+        return focalEpsilon;
     }
 
-    public int getHvCost() {
-        return hvCost;
+    /**
+     * path cost of the last findPath() divided by a lower bound on the optimal cost
+     * @return 1 when the path is known to be optimal
+     */
+    public double getSuboptimalityBound() {
+        return suboptimalityBound;
     }
 
-    public void setHvCost(int hvCost) {
-        this.hvCost = hvCost;
+    /**
+     * number of nodes taken off the open list by the last findPath()
+     * @return expanded node count
+     */
+    public int getExpandedNodes() {
+        return expandedNodes;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,207 @@
+package mycontroller.AStarSearch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A* run from the car and from the target at the same time.
+ *
+ * Each step expands the side with the smaller open list. Whenever a cell
+ * has a g value from both sides, the combined cost is a candidate route.
+ * Both sides are keyed on the same balanced potential (see potential()),
+ * so the two keys of a cell add up to the cost of the route through it.
+ * The search stops once the two smallest keys together are no better than
+ * the best candidate: no cheaper route can still be open, and the result
+ * is optimal.
+ *
+ * Walking backwards, the cost of an edge is still paid on the cell it
+ * leaves, so lava costs and tilesToAvoid mean the same as in AStarSearch.
+ */
+public class BidirectionalSearch {
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+    private static final int NO_CELL = -1;
+
+    private final SearchContext forward;
+    private final SearchContext backward;
+    private final SearchGrid grid;
+    private int start;
+    private int goal;
+    private int bestCost;
+    private int meetingCell;
+    private int expandedNodes;
+
+    public BidirectionalSearch(SearchContext forward, SearchContext backward, SearchGrid grid) {
+        this.forward = forward;
+        this.backward = backward;
+        this.grid = grid;
+    }
+
+    /**
+     * @param startX
+     * @param startY
+     * @param goalX
+     * @param goalY
+     * @return path as a list of nodes, empty if the target can't be reached
+     */
+    public List<Node> findPath(int startX, int startY, int goalX, int goalY) {
+        start = grid.getCellId(startX, startY);
+        goal = grid.getCellId(goalX, goalY);
+        bestCost = INFINITY;
+        meetingCell = NO_CELL;
+        expandedNodes = 0;
+
+        forward.beginSearch();
+        backward.beginSearch();
+        forward.touch(start, potential(start));
+        forward.setPathData(start, SearchContext.NO_PARENT, 0);
+        forward.getOpenList().insertOrUpdate(start, forward.getF(start));
+        if (grid.isPassable(goal) || goal == start) {
+            backward.touch(goal, -potential(goal));
+            backward.setPathData(goal, SearchContext.NO_PARENT, 0);
+            backward.getOpenList().insertOrUpdate(goal, backward.getF(goal));
+        }
+        if (start == goal) {
+            bestCost = 0;
+            meetingCell = start;
+        }
+
+        IndexedMinHeap forwardOpen = forward.getOpenList();
+        IndexedMinHeap backwardOpen = backward.getOpenList();
+        while (!forwardOpen.isEmpty() && !backwardOpen.isEmpty()) {
+            if (forwardOpen.peekKey() + backwardOpen.peekKey() >= bestCost) {
+                break;
+            }
+            if (forwardOpen.size() <= backwardOpen.size()) {
+                expandForward(forwardOpen.poll());
+            } else {
+                expandBackward(backwardOpen.poll());
+            }
+        }
+
+        if (meetingCell == NO_CELL) {
+            return new ArrayList<>();
+        }
+        return getPath();
+    }
+
+    private void expandForward(int current) {
+        forward.close(current);
+        expandedNodes++;
+        int x = grid.getX(current);
+        int y = grid.getY(current);
+        int cost = grid.getStepCost(current);
+        relaxForward(current, x - 1, y, cost);
+        relaxForward(current, x + 1, y, cost);
+        relaxForward(current, x, y - 1, cost);
+        relaxForward(current, x, y + 1, cost);
+    }
+
+    private void relaxForward(int current, int x, int y, int cost) {
+        if (!grid.isInside(x, y)) {
+            return;
+        }
+        int next = grid.getCellId(x, y);
+        if (!grid.isPassable(next)) {
+            return;
+        }
+        relax(forward, current, next, cost, potential(next));
+    }
+
+    private void expandBackward(int current) {
+        backward.close(current);
+        expandedNodes++;
+        int x = grid.getX(current);
+        int y = grid.getY(current);
+        relaxBackward(current, x - 1, y);
+        relaxBackward(current, x + 1, y);
+        relaxBackward(current, x, y - 1);
+        relaxBackward(current, x, y + 1);
+    }
+
+    /**
+     * the predecessor pays its own step cost to move into the current cell
+     */
+    private void relaxBackward(int current, int x, int y) {
+        if (!grid.isInside(x, y)) {
+            return;
+        }
+        int previous = grid.getCellId(x, y);
+        if (!grid.isPassable(previous) && previous != start) {
+            return;
+        }
+        relax(backward, current, previous, grid.getStepCost(previous), -potential(previous));
+    }
+
+    private void relax(SearchContext side, int current, int next, int cost, int potential) {
+        if (side.isClosed(next)) {
+            return;
+        }
+        if (!side.isTouched(next)) {
+            side.touch(next, potential);
+        }
+        int gCost = side.getG(current) + cost;
+        if (gCost >= side.getG(next)) {
+            return;
+        }
+        side.setPathData(next, current, gCost);
+        side.getOpenList().insertOrUpdate(next, side.getF(next));
+
+        SearchContext other = side == forward ? backward : forward;
+        if (other.isTouched(next) && other.getG(next) < INFINITY && gCost + other.getG(next) < bestCost) {
+            bestCost = gCost + other.getG(next);
+            meetingCell = next;
+        }
+    }
+
+    /**
+     * join the forward half (start -> meeting cell) and the backward half (meeting cell -> goal)
+     */
+    private List<Node> getPath() {
+        List<Integer> cells = new ArrayList<>();
+        for (int id = meetingCell; id != SearchContext.NO_PARENT; id = forward.getParent(id)) {
+            cells.add(id);
+        }
+        Collections.reverse(cells);
+        for (int id = backward.getParent(meetingCell); id != SearchContext.NO_PARENT; id = backward.getParent(id)) {
+            cells.add(id);
+        }
+
+        List<Node> path = new ArrayList<>();
+        Node parent = null;
+        int g = 0;
+        for (int i = 0; i < cells.size(); i++) {
+            int id = cells.get(i);
+            if (i > 0) {
+                g += grid.getStepCost(cells.get(i - 1));
+            }
+            Node node = new Node(grid.getX(id), grid.getY(id), grid.getTile(id));
+            node.setG(g);
+            node.setParent(parent);
+            path.add(node);
+            parent = node;
+        }
+        return path;
+    }
+
+    /**
+     * half the difference of the distance estimates to the goal and to the start,
+     * negated on the backward side. Both estimates have the same parity, so it is exact.
+     */
+    private int potential(int id) {
+        return (heuristic(id, goal) - heuristic(id, start)) / 2;
+    }
+
+    private int heuristic(int a, int b) {
+        return (Math.abs(grid.getX(a) - grid.getX(b)) + Math.abs(grid.getY(a) - grid.getY(b)))
+                * AStarSearch.DEFAULT_ROAD_COST;
+    }
+
+    /**
+     * nodes expanded on both sides together by the last findPath()
+     * @return expanded node count
+     */
+    public int getExpandedNodes() {
+        return expandedNodes;
+    }
+}
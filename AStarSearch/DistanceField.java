@@ -0,0 +1,247 @@
+package mycontroller.AStarSearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import world.WorldSpatial;
+
+/**
+ * Cost to reach a fixed goal from every cell, found by one Dijkstra run
+ * backwards from the goal cells.
+ *
+ * Each cell stores its distance and the direction of its next step, so
+ * following the field from any cell is an array lookup per step. Costs are
+ * the same as AStarSearch: a cell pays its own step cost to move on, and
+ * tiles to avoid can't be entered.
+ *
+ * When a cell changes, only the cells whose route ran through it are
+ * reset. They are re-seeded from their neighbours outside that subtree,
+ * and Dijkstra carries on from there, which also spreads any cost
+ * decrease outwards.
+ */
+public class DistanceField {
+    public static final int UNREACHABLE = Integer.MAX_VALUE / 2;
+    private static final byte NO_DIRECTION = -1;
+    // indexed by direction: EAST, NORTH, WEST, SOUTH
+    private static final int[] DX = {1, 0, -1, 0};
+    private static final int[] DY = {0, 1, 0, -1};
+    private static final WorldSpatial.Direction[] DIRECTIONS = {WorldSpatial.Direction.EAST,
+            WorldSpatial.Direction.NORTH, WorldSpatial.Direction.WEST, WorldSpatial.Direction.SOUTH};
+
+    private final SearchGrid grid;
+    private final int[] goals;
+    private final int[] dist;
+    private final byte[] next;
+    private final IndexedMinHeap openList;
+    private final BitSet invalid;
+    private final int[] invalidCells;
+    private int expandedNodes;
+
+    /**
+     * @param grid
+     * @param goals cell ids the field leads to, the nearest one wins
+     */
+    public DistanceField(SearchGrid grid, int... goals) {
+        this.grid = grid;
+        this.goals = goals.clone();
+        int cells = grid.getCellCount();
+        this.dist = new int[cells];
+        this.next = new byte[cells];
+        this.openList = new IndexedMinHeap(cells);
+        this.invalid = new BitSet(cells);
+        this.invalidCells = new int[cells];
+        rebuild();
+    }
+
+    /**
+     * recompute the whole field from scratch
+     */
+    public void rebuild() {
+        expandedNodes = 0;
+        Arrays.fill(dist, UNREACHABLE);
+        Arrays.fill(next, NO_DIRECTION);
+        openList.clear();
+        for (int goal : goals) {
+            if (grid.isPassable(goal)) {
+                dist[goal] = 0;
+                openList.insertOrUpdate(goal, 0);
+            }
+        }
+        propagate();
+    }
+
+    /**
+     * repair the field after the grid changed the cost or passability of a cell
+     * @param id
+     */
+    public void cellChanged(int id) {
+        expandedNodes = 0;
+        int count = collectSubtree(id);
+
+        for (int i = 0; i < count; i++) {
+            int cell = invalidCells[i];
+            dist[cell] = UNREACHABLE;
+            next[cell] = NO_DIRECTION;
+        }
+        for (int i = 0; i < count; i++) {
+            int cell = invalidCells[i];
+            if (!grid.isPassable(cell)) {
+                continue;
+            }
+            if (isGoal(cell)) {
+                dist[cell] = 0;
+                openList.insertOrUpdate(cell, 0);
+                continue;
+            }
+            // best neighbour that still has a route, seeded cells are fixed up by propagate()
+            int x = grid.getX(cell);
+            int y = grid.getY(cell);
+            for (int d = 0; d < DX.length; d++) {
+                if (!grid.isInside(x + DX[d], y + DY[d])) {
+                    continue;
+                }
+                int neighbour = grid.getCellId(x + DX[d], y + DY[d]);
+                if (!grid.isPassable(neighbour) || dist[neighbour] >= UNREACHABLE) {
+                    continue;
+                }
+                int cost = grid.getStepCost(cell) + dist[neighbour];
+                if (cost < dist[cell]) {
+                    dist[cell] = cost;
+                    next[cell] = (byte) d;
+                }
+            }
+            if (dist[cell] < UNREACHABLE) {
+                openList.insertOrUpdate(cell, dist[cell]);
+            }
+        }
+        propagate();
+    }
+
+    /**
+     * the changed cell and every cell whose next steps lead through it
+     * @return number of cells written to invalidCells
+     */
+    private int collectSubtree(int root) {
+        invalid.clear();
+        invalid.set(root);
+        invalidCells[0] = root;
+        int count = 1;
+        for (int read = 0; read < count; read++) {
+            int cell = invalidCells[read];
+            int x = grid.getX(cell);
+            int y = grid.getY(cell);
+            for (int d = 0; d < DX.length; d++) {
+                if (!grid.isInside(x + DX[d], y + DY[d])) {
+                    continue;
+                }
+                int neighbour = grid.getCellId(x + DX[d], y + DY[d]);
+                // the neighbour points back at this cell
+                if (!invalid.get(neighbour) && next[neighbour] == opposite(d)) {
+                    invalid.set(neighbour);
+                    invalidCells[count++] = neighbour;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Dijkstra outwards from whatever is on the open list
+     */
+    private void propagate() {
+        while (!openList.isEmpty()) {
+            int cell = openList.poll();
+            expandedNodes++;
+            int x = grid.getX(cell);
+            int y = grid.getY(cell);
+            for (int d = 0; d < DX.length; d++) {
+                if (!grid.isInside(x + DX[d], y + DY[d])) {
+                    continue;
+                }
+                int previous = grid.getCellId(x + DX[d], y + DY[d]);
+                if (!grid.isPassable(previous)) {
+                    continue;
+                }
+                int cost = grid.getStepCost(previous) + dist[cell];
+                if (cost < dist[previous]) {
+                    dist[previous] = cost;
+                    next[previous] = opposite(d);
+                    openList.insertOrUpdate(previous, cost);
+                }
+            }
+        }
+    }
+
+    private static byte opposite(int direction) {
+        return (byte) ((direction + 2) % DX.length);
+    }
+
+    private boolean isGoal(int id) {
+        for (int goal : goals) {
+            if (goal == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param x
+     * @param y
+     * @return cost of the cheapest route to the goal, UNREACHABLE if there is none
+     */
+    public int getDistance(int x, int y) {
+        return dist[grid.getCellId(x, y)];
+    }
+
+    /**
+     * @param x
+     * @param y
+     * @return direction of the next step towards the goal, null at the goal or if it can't be reached
+     */
+    public WorldSpatial.Direction getNextDirection(int x, int y) {
+        byte direction = next[grid.getCellId(x, y)];
+        return direction == NO_DIRECTION ? null : DIRECTIONS[direction];
+    }
+
+    /**
+     * follow the field from a cell to the goal
+     * @param x
+     * @param y
+     * @return path as a list of nodes, empty if the goal can't be reached
+     */
+    public List<Node> getPath(int x, int y) {
+        List<Node> path = new ArrayList<>();
+        int current = grid.getCellId(x, y);
+        if (dist[current] >= UNREACHABLE) {
+            return path;
+        }
+        Node parent = null;
+        while (true) {
+            Node node = new Node(grid.getX(current), grid.getY(current), grid.getTile(current));
+            node.setG(dist[grid.getCellId(x, y)] - dist[current]);
+            node.setParent(parent);
+            path.add(node);
+            byte direction = next[current];
+            if (direction == NO_DIRECTION) {
+                return path;
+            }
+            parent = node;
+            current = grid.getCellId(grid.getX(current) + DX[direction], grid.getY(current) + DY[direction]);
+        }
+    }
+
+    /**
+     * cells taken off the open list by the last rebuild() or cellChanged()
+     * @return expanded node count
+     */
+    public int getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    public SearchGrid getGrid() {
+        return grid;
+    }
+}
@@ -0,0 +1,396 @@
+package mycontroller.AStarSearch;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import mycontroller.GameMap;
+import mycontroller.HashMapTile;
+import mycontroller.MyAIController;
+import mycontroller.TilesChecker;
+import tiles.LavaTrap;
+import tiles.MapTile;
+import utilities.Coordinate;
+import world.World;
+import world.WorldSpatial;
+
+/**
+ * Stand-alone benchmark of how long the car takes before every key has been
+ * in view, exploring by frontier or by following walls.
+ *
+ * Run with: java mycontroller.AStarSearch.ExplorationBenchmark [maps]
+ * Each explorer is MyAIController running its real strategy: FOLLOWLEFTWALL
+ * and FOLLOWRIGHTWALL switch sides through StrategyFactory as in the game.
+ * The car is simulated a cell at a time. Maps are seeded mazes of routes two
+ * cells wide, as the wall followers expect, and SearchBenchmark's scattered
+ * walls. Some of the lava tiles hold keys. getMap() shows every trap as road,
+ * as the game does.
+ */
+public class ExplorationBenchmark {
+    private static final int DEFAULT_MAPS = 20;
+    private static final int KEYS = 5;
+    private static final int VIEW_SQUARE = 4;
+    private static final int MAX_TICKS = 20000;
+    private static final float DELTA = 0.05f;
+    private static final int MAZE_PITCH = 3; //two cells of route and one of wall
+    private static final double MAZE_LOOP_DENSITY = 0.1; //share of the maze's inner walls knocked through
+    private static final double MAZE_LAVA_DENSITY = 0.03;
+
+    public static void main(String[] args) {
+        int maps = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MAPS;
+        for (boolean maze : new boolean[]{true, false}) {
+            System.out.println(maze ? "maze" : "scattered walls");
+            run(maps, maze);
+        }
+    }
+
+    private static void run(int maps, boolean maze) {
+        MyAIController.Strategies[] explorers = {MyAIController.Strategies.EXPLOREFRONTIER,
+                MyAIController.Strategies.FOLLOWLEFTWALL, MyAIController.Strategies.FOLLOWRIGHTWALL};
+        long[][] totals = new long[explorers.length][6];
+        for (int seed = 1; seed <= maps; seed++) {
+            HashMap<Coordinate, HashMapTile> world = maze ? generateMaze(World.MAP_WIDTH, World.MAP_HEIGHT, seed)
+                    : SearchBenchmark.generateMap(World.MAP_WIDTH, World.MAP_HEIGHT, seed);
+            Random random = new Random(seed);
+            int[] keyCells = pickCells(world, random, KEYS, true);
+            int start = pickCells(world, random, 1, false)[0];
+            for (int i = 0; i < explorers.length; i++) {
+                long[] result = explore(world, keyCells, start, explorers[i]);
+                for (int j = 0; j < result.length; j++) {
+                    totals[i][j] += result[j];
+                }
+            }
+        }
+        System.out.println(String.format("%-16s %8s %10s %8s %8s %8s %8s", "explorer", "found", "keys/map", "ticks",
+                "cells", "turns", "lava"));
+        for (int i = 0; i < explorers.length; i++) {
+            long found = totals[i][0];
+            System.out.println(String.format("%-16s %5d/%-2d %10.2f %8s %8s %8s %8s", explorers[i], found, maps,
+                    totals[i][5] / (double) maps,
+                    found == 0 ? "-" : String.valueOf(totals[i][1] / found),
+                    found == 0 ? "-" : String.valueOf(totals[i][2] / found),
+                    found == 0 ? "-" : String.valueOf(totals[i][3] / found),
+                    found == 0 ? "-" : String.valueOf(totals[i][4] / found)));
+        }
+    }
+
+    /**
+     * drive until every key has been in view or MAX_TICKS run out
+     * @return {1 if every key was seen else 0, ticks, cells driven, turns, lava cells driven over, keys seen},
+     * the middle four 0 if not every key was seen
+     */
+    private static long[] explore(HashMap<Coordinate, HashMapTile> world, int[] keyCells, int start,
+                                  MyAIController.Strategies explorer) {
+        SimulatedController car = SimulatedController.create(world, start / World.MAP_HEIGHT,
+                start % World.MAP_HEIGHT);
+        car.setExplorationStrategy(explorer);
+        for (int tick = 0; tick < MAX_TICKS; tick++) {
+            car.update(DELTA);
+            if (countSeen(car.getLatestGameMap(), keyCells) == keyCells.length) {
+                return new long[]{1, tick, car.cells, car.turns, car.lava, keyCells.length};
+            }
+            car.drive();
+        }
+        return new long[]{0, 0, 0, 0, 0, countSeen(car.getLatestGameMap(), keyCells)};
+    }
+
+    private static int countSeen(GameMap gameMap, int[] keyCells) {
+        int seen = 0;
+        for (int keyCell : keyCells) {
+            if (gameMap.isExplored(keyCell / World.MAP_HEIGHT, keyCell % World.MAP_HEIGHT)) {
+                seen++;
+            }
+        }
+        return seen;
+    }
+
+    /**
+     * a maze of routes two cells wide, with some walls knocked through so that it has loops
+     * @param width
+     * @param height
+     * @param seed
+     * @return
+     */
+    public static HashMap<Coordinate, HashMapTile> generateMaze(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int rooms = ((width - 1) / MAZE_PITCH) * ((height - 1) / MAZE_PITCH);
+        int roomsY = (height - 1) / MAZE_PITCH;
+        boolean[] road = new boolean[width * height];
+        boolean[] visited = new boolean[rooms];
+        int[] stack = new int[rooms];
+        int size = 0;
+        stack[size++] = 0;
+        visited[0] = true;
+        openRoom(road, height, 0, roomsY);
+        // depth first through the rooms, opening the wall to each one it reaches
+        while (size > 0) {
+            int room = stack[size - 1];
+            int[] next = new int[4];
+            int count = 0;
+            for (int[] step : new int[][]{{1, 0}, {-1, 0}, {0, 1}, {0, -1}}) {
+                int roomX = room / roomsY + step[0];
+                int roomY = room % roomsY + step[1];
+                int neighbour = roomX * roomsY + roomY;
+                if (roomX >= 0 && roomY >= 0 && roomY < roomsY && neighbour < rooms && !visited[neighbour]) {
+                    next[count++] = neighbour;
+                }
+            }
+            if (count == 0) {
+                size--;
+                continue;
+            }
+            int neighbour = next[random.nextInt(count)];
+            visited[neighbour] = true;
+            openRoom(road, height, neighbour, roomsY);
+            openWall(road, height, room, neighbour, roomsY);
+            stack[size++] = neighbour;
+        }
+        for (int room = 0; room < rooms; room++) {
+            if (room + roomsY < rooms && random.nextDouble() < MAZE_LOOP_DENSITY) {
+                openWall(road, height, room, room + roomsY, roomsY);
+            }
+            if ((room + 1) % roomsY != 0 && random.nextDouble() < MAZE_LOOP_DENSITY) {
+                openWall(road, height, room, room + 1, roomsY);
+            }
+        }
+
+        HashMap<Coordinate, HashMapTile> map = new HashMap<>();
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                MapTile tile;
+                if (!road[x * height + y]) {
+                    tile = new MapTile(MapTile.Type.WALL);
+                } else if (random.nextDouble() < MAZE_LAVA_DENSITY) {
+                    tile = new LavaTrap();
+                } else {
+                    tile = new MapTile(MapTile.Type.ROAD);
+                }
+                map.put(new Coordinate(x, y), new HashMapTile(tile));
+            }
+        }
+        return map;
+    }
+
+    private static void openRoom(boolean[] road, int height, int room, int roomsY) {
+        int left = 1 + (room / roomsY) * MAZE_PITCH;
+        int bottom = 1 + (room % roomsY) * MAZE_PITCH;
+        for (int x = left; x < left + MAZE_PITCH - 1; x++) {
+            for (int y = bottom; y < bottom + MAZE_PITCH - 1; y++) {
+                road[x * height + y] = true;
+            }
+        }
+    }
+
+    /**
+     * open the wall between two rooms side by side, the whole width of the route
+     */
+    private static void openWall(boolean[] road, int height, int room, int neighbour, int roomsY) {
+        int first = Math.min(room, neighbour);
+        int left = 1 + (first / roomsY) * MAZE_PITCH;
+        int bottom = 1 + (first % roomsY) * MAZE_PITCH;
+        boolean acrossX = Math.abs(room - neighbour) == roomsY;
+        for (int i = 0; i < MAZE_PITCH - 1; i++) {
+            int x = acrossX ? left + MAZE_PITCH - 1 : left + i;
+            int y = acrossX ? bottom + i : bottom + MAZE_PITCH - 1;
+            road[x * height + y] = true;
+        }
+    }
+
+    /**
+     * @return the map as getMap() shows it, walls and road only
+     */
+    private static HashMap<Coordinate, MapTile> createShownMap(HashMap<Coordinate, HashMapTile> world) {
+        HashMap<Coordinate, MapTile> shown = new HashMap<>();
+        MapTile road = new MapTile(MapTile.Type.ROAD);
+        for (Map.Entry<Coordinate, HashMapTile> entry : world.entrySet()) {
+            MapTile tile = entry.getValue().getTile();
+            shown.put(entry.getKey(), tile.isType(MapTile.Type.WALL) ? tile : road);
+        }
+        return shown;
+    }
+
+    /**
+     * @param lava true to pick lava tiles, false for road
+     * @return cell ids of distinct tiles of that kind
+     */
+    private static int[] pickCells(HashMap<Coordinate, HashMapTile> world, Random random, int count, boolean lava) {
+        int[] cells = new int[count];
+        int picked = 0;
+        while (picked < count) {
+            int x = random.nextInt(World.MAP_WIDTH);
+            int y = random.nextInt(World.MAP_HEIGHT);
+            MapTile tile = world.get(new Coordinate(x, y)).getTile();
+            boolean match = lava ? tile.isType(MapTile.Type.TRAP) : tile.isType(MapTile.Type.ROAD);
+            int cell = x * World.MAP_HEIGHT + y;
+            boolean taken = false;
+            for (int i = 0; i < picked; i++) {
+                taken |= cells[i] == cell;
+            }
+            if (match && !taken) {
+                cells[picked++] = cell;
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * MyAIController on a simulated car instead of the game's.
+     *
+     * The car moves one cell a tick while it has any speed. It turns an eighth
+     * of a turn a tick and stands still while it turns or waits for a turn it
+     * has asked for. Driving into a wall or off the map stops it where it is.
+     */
+    private static final class SimulatedController extends MyAIController {
+        private static final float ACCELERATION = 0.5f;
+        private static final int TURN_DEGREES = 45;
+        // getMap() is called by MyAIController's constructor, before this class's fields are set
+        private static HashMap<Coordinate, MapTile> shownMap;
+
+        private HashMap<Coordinate, HashMapTile> world;
+        private int x;
+        private int y;
+        private WorldSpatial.Direction orientation = WorldSpatial.Direction.EAST; //last heading the car was square to
+        private int angle = WorldSpatial.EAST_DEGREE_MIN;
+        private float speed = 0;
+        private boolean turned = false; //turned since the last drive()
+        private long cells = 0;
+        private long turns = 0;
+        private long lava = 0;
+
+        private SimulatedController() {
+            super(null);
+        }
+
+        private static SimulatedController create(HashMap<Coordinate, HashMapTile> world, int x, int y) {
+            shownMap = createShownMap(world);
+            SimulatedController car = new SimulatedController();
+            car.world = world;
+            car.x = x;
+            car.y = y;
+            return car;
+        }
+
+        /**
+         * move the car one cell on the way it faces, unless it has stopped, is turning or is waiting to turn
+         */
+        private void drive() {
+            boolean turning = turned || angle % 90 != 0 || getIsTurningLeft() || getIsTurningRight();
+            turned = false;
+            if (speed <= 0 || turning) {
+                return;
+            }
+            int nextX = x + MotionPlan.getDeltaX(orientation);
+            int nextY = y + MotionPlan.getDeltaY(orientation);
+            HashMapTile tile = world.get(new Coordinate(nextX, nextY));
+            if (tile == null || tile.isType(MapTile.Type.WALL)) {
+                speed = 0;
+                return;
+            }
+            x = nextX;
+            y = nextY;
+            cells++;
+            if (TilesChecker.checkForLavaTrap(tile.getTile())) {
+                lava++;
+            }
+        }
+
+        @Override
+        public HashMap<Coordinate, MapTile> getMap() {
+            return shownMap;
+        }
+
+        @Override
+        public int getKey() {
+            return KEYS + 1;
+        }
+
+        @Override
+        public int getViewSquare() {
+            return VIEW_SQUARE;
+        }
+
+        /**
+         * @return the square the game's getView() would return around the car, empty tiles off the map
+         */
+        @Override
+        public HashMap<Coordinate, MapTile> getView() {
+            HashMap<Coordinate, MapTile> view = new HashMap<>();
+            MapTile empty = new MapTile(MapTile.Type.EMPTY);
+            for (int viewX = x - VIEW_SQUARE; viewX <= x + VIEW_SQUARE; viewX++) {
+                for (int viewY = y - VIEW_SQUARE; viewY <= y + VIEW_SQUARE; viewY++) {
+                    Coordinate coordinate = new Coordinate(viewX, viewY);
+                    HashMapTile tile = world.get(coordinate);
+                    view.put(coordinate, tile == null ? empty : tile.getTile());
+                }
+            }
+            return view;
+        }
+
+        @Override
+        public String getPosition() {
+            return x + "," + y;
+        }
+
+        @Override
+        public WorldSpatial.Direction getOrientation() {
+            return orientation;
+        }
+
+        @Override
+        public float getAngle() {
+            return angle;
+        }
+
+        @Override
+        public float getSpeed() {
+            return speed;
+        }
+
+        @Override
+        public float getHealth() {
+            return 100;
+        }
+
+        @Override
+        public void applyForwardAcceleration() {
+            speed = Math.min(speed + ACCELERATION, MAX_CAR_SPEED);
+        }
+
+        @Override
+        public void applyReverseAcceleration() {
+            speed = Math.max(speed - ACCELERATION, 0);
+        }
+
+        @Override
+        public void applyBrake() {
+            speed = 0;
+        }
+
+        @Override
+        public void turnLeft(float delta) {
+            rotate(TURN_DEGREES);
+        }
+
+        @Override
+        public void turnRight(float delta) {
+            rotate(-TURN_DEGREES);
+        }
+
+        /**
+         * turn counter clockwise by degrees, the orientation changes once the car is square to the next heading
+         * @param degrees
+         */
+        private void rotate(int degrees) {
+            angle = (angle + degrees + WorldSpatial.EAST_DEGREE_MAX) % WorldSpatial.EAST_DEGREE_MAX;
+            turned = true;
+            WorldSpatial.Direction squareTo = angle == WorldSpatial.NORTH_DEGREE ? WorldSpatial.Direction.NORTH
+                    : angle == WorldSpatial.WEST_DEGREE ? WorldSpatial.Direction.WEST
+                    : angle == WorldSpatial.SOUTH_DEGREE ? WorldSpatial.Direction.SOUTH
+                    : angle == WorldSpatial.EAST_DEGREE_MIN ? WorldSpatial.Direction.EAST : orientation;
+            if (squareTo != orientation) {
+                orientation = squareTo;
+                turns++;
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package mycontroller.AStarSearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import mycontroller.FrontierSet;
+import mycontroller.GameMap;
+
+/**
+ * Picks where to explore next from GameMap's frontier, the explored cells
+ * next to unexplored ones, with a single Dijkstra sweep from the car.
+ *
+ * Frontier cells are grouped into square clusters. A cluster's gain is the
+ * number of unexplored cells its frontier cells border, and its cost is
+ * the path cost to its nearest frontier cell. The cluster with the best
+ * gain per cost wins, and the route to its nearest cell is returned. The
+ * sweep stops once every frontier cell has been reached.
+ */
+public class FrontierSearch {
+    public static final int DEFAULT_CLUSTER_SIZE = 8;
+    // added to every cluster's cost, so a cluster next to the car doesn't win on a tiny cost alone
+    private static final int MIN_TRAVEL_COST = 5 * AStarSearch.DEFAULT_ROAD_COST;
+    private static final int NONE = -1;
+
+    private final SearchContext context;
+    private final SearchGrid grid;
+    private final int clusterSize;
+    private final int clustersY;
+    private final int[] clusterGain;
+    private final int[] clusterCell; // nearest frontier cell of each cluster
+    // a cell is on the frontier of the current query if its mark equals the context's generation
+    private final int[] frontierMark;
+    private int expandedNodes;
+
+    public FrontierSearch(SearchContext context, SearchGrid grid) {
+        this(context, grid, DEFAULT_CLUSTER_SIZE);
+    }
+
+    public FrontierSearch(SearchContext context, SearchGrid grid, int clusterSize) {
+        this.context = context;
+        this.grid = grid;
+        this.clusterSize = clusterSize;
+        int clustersX = (grid.getWidth() + clusterSize - 1) / clusterSize;
+        this.clustersY = (grid.getHeight() + clusterSize - 1) / clusterSize;
+        this.clusterGain = new int[clustersX * clustersY];
+        this.clusterCell = new int[clustersX * clustersY];
+        this.frontierMark = new int[grid.getCellCount()];
+    }
+
+    /**
+     * @param startX
+     * @param startY
+     * @param gameMap holding the frontier
+     * @return the chosen frontier cell and the path to it, null if no frontier cell can be reached
+     */
+    public MultiTargetSearch.Result findBestFrontier(int startX, int startY, GameMap gameMap) {
+        context.beginSearch();
+        expandedNodes = 0;
+        int generation = context.getGeneration();
+        FrontierSet frontier = gameMap.getFrontier();
+        int remaining = 0;
+        for (int cell = frontier.first(); cell != FrontierSet.END; cell = frontier.next(cell)) {
+            frontierMark[cell] = generation;
+            remaining++;
+        }
+        if (remaining == 0) {
+            return null;
+        }
+
+        Arrays.fill(clusterGain, 0);
+        Arrays.fill(clusterCell, NONE);
+        int start = grid.getCellId(startX, startY);
+        context.touch(start, 0);
+        context.setPathData(start, SearchContext.NO_PARENT, 0);
+        IndexedMinHeap openList = context.getOpenList();
+        openList.insertOrUpdate(start, 0);
+
+        while (!openList.isEmpty() && remaining > 0) {
+            int current = openList.poll();
+            context.close(current);
+            expandedNodes++;
+            int x = grid.getX(current);
+            int y = grid.getY(current);
+            if (frontierMark[current] == generation) {
+                remaining--;
+                // cells come off in cost order, so the first one of a cluster is its nearest
+                int cluster = (x / clusterSize) * clustersY + y / clusterSize;
+                if (clusterCell[cluster] == NONE) {
+                    clusterCell[cluster] = current;
+                }
+                clusterGain[cluster] += countUnexplored(gameMap, x, y);
+            }
+            int gCost = context.getG(current) + grid.getStepCost(current);
+            relax(current, x - 1, y, gCost);
+            relax(current, x + 1, y, gCost);
+            relax(current, x, y - 1, gCost);
+            relax(current, x, y + 1, gCost);
+        }
+
+        int best = NONE;
+        double bestScore = 0;
+        for (int cluster = 0; cluster < clusterCell.length; cluster++) {
+            if (clusterCell[cluster] == NONE) {
+                continue;
+            }
+            double score = clusterGain[cluster] / (double) (context.getG(clusterCell[cluster]) + MIN_TRAVEL_COST);
+            if (best == NONE || score > bestScore) {
+                best = cluster;
+                bestScore = score;
+            }
+        }
+        if (best == NONE) {
+            return null;
+        }
+        int target = clusterCell[best];
+        return new MultiTargetSearch.Result(grid.getX(target), grid.getY(target), context.getG(target),
+                getPath(target));
+    }
+
+    private static int countUnexplored(GameMap gameMap, int x, int y) {
+        int count = 0;
+        if (gameMap.isUnexplored(x - 1, y)) {
+            count++;
+        }
+        if (gameMap.isUnexplored(x + 1, y)) {
+            count++;
+        }
+        if (gameMap.isUnexplored(x, y - 1)) {
+            count++;
+        }
+        if (gameMap.isUnexplored(x, y + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private void relax(int current, int x, int y, int gCost) {
+        if (!grid.isInside(x, y)) {
+            return;
+        }
+        int next = grid.getCellId(x, y);
+        if (!grid.isPassable(next) || context.isClosed(next)) {
+            return;
+        }
+        if (!context.isTouched(next)) {
+            context.touch(next, 0);
+        }
+        if (gCost < context.getG(next)) {
+            context.setPathData(next, current, gCost);
+            context.getOpenList().insertOrUpdate(next, gCost);
+        }
+    }
+
+    private List<Node> getPath(int last) {
+        List<Node> path = new ArrayList<>();
+        for (int id = last; id != SearchContext.NO_PARENT; id = context.getParent(id)) {
+            Node node = new Node(grid.getX(id), grid.getY(id), grid.getTile(id));
+            node.setG(context.getG(id));
+            path.add(node);
+        }
+        Collections.reverse(path);
+        for (int i = 1; i < path.size(); i++) {
+            path.get(i).setParent(path.get(i - 1));
+        }
+        return path;
+    }
+
+    /**
+     * cells taken off the open list by the last findBestFrontier()
+     * @return expanded node count
+     */
+    public int getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    public SearchGrid getGrid() {
+        return grid;
+    }
+}
@@ -0,0 +1,256 @@
+package mycontroller.AStarSearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Fastest route that the car survives, given how much health it has left.
+ *
+ * Unlike AStarSearch, lava isn't priced as a flat detour cost. Every move
+ * takes the same time, and entering lava costs health instead. A search
+ * state is a label (cell, health left, time so far). A label is dropped
+ * when another label on the same cell is at least as fast with at least
+ * as much health, so only the Pareto front of each cell is kept. On a
+ * health trap a label may stop to heal back to full. The extra time this
+ * takes lets a route detour through a trap when crossing lava directly
+ * would kill the car.
+ *
+ * All costs are small integers, so the open list is a Dial bucket queue
+ * indexed by f, walked as a ring. With a consistent heuristic the first
+ * label to reach the goal is the fastest survivable route.
+ */
+public class HealthConstrainedPlanner {
+    public static final int DEFAULT_MAX_HEALTH = 100;
+    public static final int DEFAULT_LAVA_DAMAGE = 5;
+    public static final int DEFAULT_HEALING_COST = 1;
+    private static final int NONE = -1;
+    private static final int[] DX = {1, 0, -1, 0};
+    private static final int[] DY = {0, 1, 0, -1};
+
+    private final SearchGrid grid;
+    private final int maxHealth;
+    private final int lavaDamage;
+    private final int healingCost;
+
+    // labels, stored as parallel arrays
+    private int[] labelCell = new int[1024];
+    private int[] labelHealth = new int[1024];
+    private int[] labelG = new int[1024];
+    private int[] labelParent = new int[1024];
+    private int[] nextInCell = new int[1024];
+    private int[] nextInBucket = new int[1024];
+    private boolean[] dominated = new boolean[1024];
+    private int labelCount;
+
+    // each cell's list of labels still on its Pareto front, reset lazily by generation
+    private final int[] cellHead;
+    private final int[] cellStamp;
+    private int generation = 0;
+
+    // Dial queue over f, a ring big enough for the largest f increase of a single move
+    private final int[] buckets;
+    private int queued;
+    private int cursor;
+
+    private int goal;
+    private int remainingHealth;
+    private int expandedLabels;
+
+    public HealthConstrainedPlanner(SearchGrid grid) {
+        this(grid, DEFAULT_MAX_HEALTH, DEFAULT_LAVA_DAMAGE, DEFAULT_HEALING_COST);
+    }
+
+    /**
+     * @param grid
+     * @param maxHealth health after healing on a health trap
+     * @param lavaDamage health lost entering a lava cell
+     * @param healingCost time per health point regained
+     */
+    public HealthConstrainedPlanner(SearchGrid grid, int maxHealth, int lavaDamage, int healingCost) {
+        this.grid = grid;
+        this.maxHealth = maxHealth;
+        this.lavaDamage = lavaDamage;
+        this.healingCost = healingCost;
+        this.cellHead = new int[grid.getCellCount()];
+        this.cellStamp = new int[grid.getCellCount()];
+        // a move adds at most one step plus one step of heuristic, healing adds at most a full refill
+        this.buckets = new int[2 * AStarSearch.DEFAULT_ROAD_COST + maxHealth * healingCost + 1];
+    }
+
+    /**
+     * @param startX
+     * @param startY
+     * @param health health the car has now
+     * @param goalX
+     * @param goalY
+     * @return fastest survivable path as a list of nodes, empty if there is none
+     */
+    public List<Node> findPath(int startX, int startY, int health, int goalX, int goalY) {
+        goal = grid.getCellId(goalX, goalY);
+        remainingHealth = 0;
+        expandedLabels = 0;
+        labelCount = 0;
+        queued = 0;
+        cursor = 0;
+        Arrays.fill(buckets, NONE);
+        if (++generation == 0) {
+            Arrays.fill(cellStamp, 0);
+            generation = 1;
+        }
+
+        int start = grid.getCellId(startX, startY);
+        addLabel(start, Math.min(health, maxHealth), 0, NONE);
+
+        while (queued > 0) {
+            int label = poll();
+            if (dominated[label]) {
+                continue;
+            }
+            expandedLabels++;
+            int cell = labelCell[label];
+            if (cell == goal) {
+                remainingHealth = labelHealth[label];
+                return getPath(label);
+            }
+            expand(label);
+        }
+        return new ArrayList<>();
+    }
+
+    private void expand(int label) {
+        int cell = labelCell[label];
+        int health = labelHealth[label];
+        if (grid.isHealing(cell) && health < maxHealth) {
+            addLabel(cell, maxHealth, labelG[label] + (maxHealth - health) * healingCost, label);
+        }
+        int x = grid.getX(cell);
+        int y = grid.getY(cell);
+        for (int d = 0; d < DX.length; d++) {
+            if (!grid.isInside(x + DX[d], y + DY[d])) {
+                continue;
+            }
+            int next = grid.getCellId(x + DX[d], y + DY[d]);
+            if (!grid.isPassable(next)) {
+                continue;
+            }
+            int nextHealth = grid.isLava(next) ? health - lavaDamage : health;
+            if (nextHealth <= 0) {
+                continue;
+            }
+            addLabel(next, nextHealth, labelG[label] + AStarSearch.DEFAULT_ROAD_COST, label);
+        }
+    }
+
+    /**
+     * add a label unless the cell already has one at least as good, dropping the ones it beats
+     */
+    private void addLabel(int cell, int health, int g, int parent) {
+        if (cellStamp[cell] != generation) {
+            cellStamp[cell] = generation;
+            cellHead[cell] = NONE;
+        }
+        int previous = NONE;
+        for (int other = cellHead[cell]; other != NONE; other = nextInCell[other]) {
+            if (labelG[other] <= g && labelHealth[other] >= health) {
+                return;
+            }
+            if (g <= labelG[other] && health >= labelHealth[other]) {
+                dominated[other] = true;
+                if (previous == NONE) {
+                    cellHead[cell] = nextInCell[other];
+                } else {
+                    nextInCell[previous] = nextInCell[other];
+                }
+            } else {
+                previous = other;
+            }
+        }
+
+        if (labelCount == labelCell.length) {
+            grow();
+        }
+        int label = labelCount++;
+        labelCell[label] = cell;
+        labelHealth[label] = health;
+        labelG[label] = g;
+        labelParent[label] = parent;
+        dominated[label] = false;
+        nextInCell[label] = cellHead[cell];
+        cellHead[cell] = label;
+
+        int bucket = (g + heuristic(cell)) % buckets.length;
+        nextInBucket[label] = buckets[bucket];
+        buckets[bucket] = label;
+        queued++;
+    }
+
+    private int poll() {
+        while (buckets[cursor % buckets.length] == NONE) {
+            cursor++;
+        }
+        int bucket = cursor % buckets.length;
+        int label = buckets[bucket];
+        buckets[bucket] = nextInBucket[label];
+        queued--;
+        return label;
+    }
+
+    private void grow() {
+        int size = labelCell.length * 2;
+        labelCell = Arrays.copyOf(labelCell, size);
+        labelHealth = Arrays.copyOf(labelHealth, size);
+        labelG = Arrays.copyOf(labelG, size);
+        labelParent = Arrays.copyOf(labelParent, size);
+        nextInCell = Arrays.copyOf(nextInCell, size);
+        nextInBucket = Arrays.copyOf(nextInBucket, size);
+        dominated = Arrays.copyOf(dominated, size);
+    }
+
+    private int heuristic(int cell) {
+        return (Math.abs(grid.getX(cell) - grid.getX(goal)) + Math.abs(grid.getY(cell) - grid.getY(goal)))
+                * AStarSearch.DEFAULT_ROAD_COST;
+    }
+
+    /**
+     * a stop to heal shows up as two labels on the same cell, only one node is kept for it
+     */
+    private List<Node> getPath(int last) {
+        List<Node> path = new ArrayList<>();
+        for (int label = last; label != NONE; label = labelParent[label]) {
+            int cell = labelCell[label];
+            if (!path.isEmpty() && grid.getCellId(path.get(path.size() - 1).getX(),
+                    path.get(path.size() - 1).getY()) == cell) {
+                continue;
+            }
+            Node node = new Node(grid.getX(cell), grid.getY(cell), grid.getTile(cell));
+            node.setG(labelG[label]);
+            path.add(node);
+        }
+        Collections.reverse(path);
+        for (int i = 1; i < path.size(); i++) {
+            path.get(i).setParent(path.get(i - 1));
+        }
+        return path;
+    }
+
+    /**
+     * @return health the car has left at the end of the last path found
+     */
+    public int getRemainingHealth() {
+        return remainingHealth;
+    }
+
+    /**
+     * labels taken off the queue by the last findPath()
+     * @return expanded label count
+     */
+    public int getExpandedLabels() {
+        return expandedLabels;
+    }
+
+    public SearchGrid getGrid() {
+        return grid;
+    }
+}
@@ -0,0 +1,310 @@
+package mycontroller.AStarSearch;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import mycontroller.MapChangeListener;
+import tiles.MapTile;
+
+/**
+ * D* Lite planner that repairs its path when GameMap reports changed tiles.
+ *
+ * The search runs backwards from the goal, so the g values stay valid while
+ * the car moves. A tile change only re-queues the changed cell and its
+ * neighbours, and the next findPath() re-expands just the region whose
+ * distances actually changed instead of the whole map.
+ */
+public class IncrementalPlanner implements MapChangeListener {
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+    private static final int NO_CELL = -1;
+
+    private final SearchGrid grid;
+    private final int[] g;
+    private final int[] rhs;
+    private final int[] stamp;
+    private final IndexedMinHeap openList;
+    private final BitSet pathCells;
+    private int generation = 0;
+
+    private int goalId = NO_CELL;
+    private int startId = NO_CELL;
+    private int lastStartId = NO_CELL;
+    private int km = 0;
+    private boolean pathAffected = false;
+    private int expandedNodes;
+
+    public IncrementalPlanner(SearchGrid grid) {
+        this.grid = grid;
+        int cells = grid.getCellCount();
+        this.g = new int[cells];
+        this.rhs = new int[cells];
+        this.stamp = new int[cells];
+        this.openList = new IndexedMinHeap(cells);
+        this.pathCells = new BitSet(cells);
+    }
+
+    /**
+     * start planning towards a new goal, dropping everything known about the old one
+     * @param x
+     * @param y
+     */
+    public void setGoal(int x, int y) {
+        int newGoal = grid.getCellId(x, y);
+        if (newGoal == goalId) {
+            return;
+        }
+        goalId = newGoal;
+        generation++;
+        openList.clear();
+        pathCells.clear();
+        km = 0;
+        startId = NO_CELL;
+        lastStartId = NO_CELL;
+        rhs(goalId);
+        rhs[goalId] = 0;
+        openList.insertOrUpdate(goalId, calculateKey(goalId));
+    }
+
+    /**
+     * (re)compute the path from the car's cell to the goal, only repairing
+     * what changed since the previous call
+     * @param x
+     * @param y
+     * @return path as a list of nodes, empty if the goal can't be reached
+     */
+    public List<Node> findPath(int x, int y) {
+        expandedNodes = 0;
+        int newStart = grid.getCellId(x, y);
+        if (newStart != startId) {
+            int oldStart = startId;
+            startId = newStart;
+            if (lastStartId != NO_CELL) {
+                km += heuristic(lastStartId, startId);
+            }
+            lastStartId = startId;
+            // the start cell may be left even if it is a tile to avoid, so its edges depend on it being the start
+            if (oldStart != NO_CELL) {
+                updateVertex(oldStart);
+            }
+            updateVertex(startId);
+        }
+        computeShortestPath();
+        pathAffected = false;
+        return extractPath();
+    }
+
+    /**
+     * true if tiles changed since the last findPath() in a way that could alter the route
+     * @return
+     */
+    public boolean isPathAffected() {
+        return pathAffected;
+    }
+
+    @Override
+    public void tileChanged(int x, int y, MapTile tile) {
+        if (!grid.isInside(x, y)) {
+            return;
+        }
+        int id = grid.getCellId(x, y);
+        int oldCost = grid.getStepCost(id);
+        boolean wasPassable = grid.isPassable(id);
+        if (!grid.updateCell(x, y, tile) || goalId == NO_CELL) {
+            return;
+        }
+
+        // a cheaper tile can open a shortcut anywhere, a dearer one only matters on the path
+        boolean cheaper = grid.getStepCost(id) < oldCost || (!wasPassable && grid.isPassable(id));
+        if (cheaper || pathCells.get(id)) {
+            pathAffected = true;
+        }
+
+        // both the edges out of the cell and the edges into it changed
+        updateVertex(id);
+        updateNeighbours(id);
+    }
+
+    private void computeShortestPath() {
+        if (startId == NO_CELL) {
+            return;
+        }
+        while (!openList.isEmpty()
+                && (openList.peekKey() < calculateKey(startId) || rhs(startId) != g(startId))) {
+            long oldKey = openList.peekKey();
+            int u = openList.poll();
+            expandedNodes++;
+            long newKey = calculateKey(u);
+            if (oldKey < newKey) {
+                openList.insertOrUpdate(u, newKey);
+            } else if (g(u) > rhs(u)) {
+                g[u] = rhs(u);
+                updateNeighbours(u);
+            } else {
+                g[u] = INFINITY;
+                updateVertex(u);
+                updateNeighbours(u);
+            }
+        }
+    }
+
+    private void updateNeighbours(int id) {
+        int x = grid.getX(id);
+        int y = grid.getY(id);
+        if (x > 0) {
+            updateVertex(grid.getCellId(x - 1, y));
+        }
+        if (x + 1 < grid.getWidth()) {
+            updateVertex(grid.getCellId(x + 1, y));
+        }
+        if (y > 0) {
+            updateVertex(grid.getCellId(x, y - 1));
+        }
+        if (y + 1 < grid.getHeight()) {
+            updateVertex(grid.getCellId(x, y + 1));
+        }
+    }
+
+    private void updateVertex(int u) {
+        if (u != goalId) {
+            rhs(u);
+            rhs[u] = minSuccessorCost(u);
+        }
+        if (g(u) != rhs(u)) {
+            openList.insertOrUpdate(u, calculateKey(u));
+        } else {
+            openList.remove(u);
+        }
+    }
+
+    /**
+     * @param u
+     * @return min over the neighbours v of c(u, v) + g(v)
+     */
+    private int minSuccessorCost(int u) {
+        if (!canLeave(u)) {
+            return INFINITY;
+        }
+        int best = INFINITY;
+        int cost = grid.getStepCost(u);
+        int x = grid.getX(u);
+        int y = grid.getY(u);
+        if (x > 0) {
+            best = Math.min(best, edgeCost(cost, grid.getCellId(x - 1, y)));
+        }
+        if (x + 1 < grid.getWidth()) {
+            best = Math.min(best, edgeCost(cost, grid.getCellId(x + 1, y)));
+        }
+        if (y > 0) {
+            best = Math.min(best, edgeCost(cost, grid.getCellId(x, y - 1)));
+        }
+        if (y + 1 < grid.getHeight()) {
+            best = Math.min(best, edgeCost(cost, grid.getCellId(x, y + 1)));
+        }
+        return best;
+    }
+
+    private int edgeCost(int cost, int v) {
+        if (!grid.isPassable(v) || g(v) >= INFINITY) {
+            return INFINITY;
+        }
+        return cost + g(v);
+    }
+
+    private boolean canLeave(int u) {
+        return u == startId || grid.isPassable(u);
+    }
+
+    /**
+     * follow the cheapest successor from the start until the goal is reached
+     */
+    private List<Node> extractPath() {
+        List<Node> path = new ArrayList<>();
+        pathCells.clear();
+        if (startId == NO_CELL || g(startId) >= INFINITY) {
+            return path;
+        }
+        Node parent = null;
+        int current = startId;
+        for (int steps = 0; steps < grid.getCellCount(); steps++) {
+            Node node = new Node(grid.getX(current), grid.getY(current), grid.getTile(current));
+            node.setG(g(startId) - g(current));
+            node.setParent(parent);
+            path.add(node);
+            pathCells.set(current);
+            if (current == goalId) {
+                return path;
+            }
+            parent = node;
+            current = bestSuccessor(current);
+            if (current == NO_CELL) {
+                break;
+            }
+        }
+        pathCells.clear();
+        return new ArrayList<>();
+    }
+
+    private int bestSuccessor(int u) {
+        int best = NO_CELL;
+        int bestCost = INFINITY;
+        int cost = grid.getStepCost(u);
+        int x = grid.getX(u);
+        int y = grid.getY(u);
+        int[] neighbours = {
+                x > 0 ? grid.getCellId(x - 1, y) : NO_CELL,
+                x + 1 < grid.getWidth() ? grid.getCellId(x + 1, y) : NO_CELL,
+                y > 0 ? grid.getCellId(x, y - 1) : NO_CELL,
+                y + 1 < grid.getHeight() ? grid.getCellId(x, y + 1) : NO_CELL};
+        for (int v : neighbours) {
+            if (v != NO_CELL && edgeCost(cost, v) < bestCost) {
+                bestCost = edgeCost(cost, v);
+                best = v;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * D* Lite key [min(g, rhs) + h(start, u) + km; min(g, rhs)] packed into one long
+     */
+    private long calculateKey(int u) {
+        int minCost = Math.min(g(u), rhs(u));
+        int start = startId == NO_CELL ? u : startId;
+        long primary = Math.min((long) minCost + heuristic(start, u) + km, INFINITY);
+        return (primary << 32) | minCost;
+    }
+
+    /**
+     * Manhattan distance scaled by the cheapest step, so it never overestimates
+     */
+    private int heuristic(int a, int b) {
+        return (Math.abs(grid.getX(a) - grid.getX(b)) + Math.abs(grid.getY(a) - grid.getY(b)))
+                * AStarSearch.DEFAULT_ROAD_COST;
+    }
+
+    /**
+     * g value of a cell, lazily reset to infinity the first time it is used for the current goal
+     */
+    private int g(int u) {
+        if (stamp[u] != generation) {
+            stamp[u] = generation;
+            g[u] = INFINITY;
+            rhs[u] = INFINITY;
+        }
+        return g[u];
+    }
+
+    private int rhs(int u) {
+        g(u);
+        return rhs[u];
+    }
+
+    public int getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    public SearchGrid getGrid() {
+        return grid;
+    }
+}
@@ -0,0 +1,174 @@
+package mycontroller.AStarSearch;
+
+/**
+ * Binary min-heap over integer cell ids.
+ *
+ * Every cell id keeps track of its slot in the heap, so contains, decrease-key
+ * and remove are O(1) / O(log n) instead of the linear scans a PriorityQueue
+ * needs for the same operations.
+ */
+public class IndexedMinHeap {
+    private static final int NOT_IN_HEAP = -1;
+
+    private int[] heap;      // slot -> cell id
+    private int[] position;  // cell id -> slot, NOT_IN_HEAP if absent
+    private long[] keys;     // cell id -> priority
+    private int size;
+
+    public IndexedMinHeap(int capacity) {
+        this.heap = new int[capacity];
+        this.position = new int[capacity];
+        this.keys = new long[capacity];
+        for (int i = 0; i < capacity; i++) {
+            position[i] = NOT_IN_HEAP;
+        }
+    }
+
+    /**
+     * add a cell, or update its priority if it is already queued
+     * @param id
+     * @param key
+     */
+    public void insertOrUpdate(int id, long key) {
+        if (contains(id)) {
+            update(id, key);
+        } else {
+            keys[id] = key;
+            heap[size] = id;
+            position[id] = size;
+            siftUp(size++);
+        }
+    }
+
+    /**
+     * change the priority of a queued cell, moving it up or down as needed
+     * @param id
+     * @param key
+     */
+    public void update(int id, long key) {
+        long oldKey = keys[id];
+        keys[id] = key;
+        if (key < oldKey) {
+            siftUp(position[id]);
+        } else if (key > oldKey) {
+            siftDown(position[id]);
+        }
+    }
+
+    /**
+     * remove and return the cell with the lowest priority
+     * @return cell id
+     */
+    public int poll() {
+        int top = heap[0];
+        removeAt(0);
+        return top;
+    }
+
+    public void remove(int id) {
+        if (contains(id)) {
+            removeAt(position[id]);
+        }
+    }
+
+    public int peek() {
+        return heap[0];
+    }
+
+    public long peekKey() {
+        return keys[heap[0]];
+    }
+
+    public long getKey(int id) {
+        return keys[id];
+    }
+
+    public boolean contains(int id) {
+        return position[id] != NOT_IN_HEAP;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * walk every queued id, in no particular order
+     * @param slot from 0 to size() - 1
+     * @return cell id stored in that slot
+     */
+    public int get(int slot) {
+        return heap[slot];
+    }
+
+    public int capacity() {
+        return position.length;
+    }
+
+    /**
+     * empty the heap, only touching the slots that are in use
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = NOT_IN_HEAP;
+        }
+        size = 0;
+    }
+
+    private void removeAt(int slot) {
+        int id = heap[slot];
+        position[id] = NOT_IN_HEAP;
+        size--;
+        if (slot == size) {
+            return;
+        }
+        int last = heap[size];
+        heap[slot] = last;
+        position[last] = slot;
+        siftUp(slot);
+        siftDown(position[last]);
+    }
+
+    private void siftUp(int slot) {
+        int id = heap[slot];
+        long key = keys[id];
+        while (slot > 0) {
+            int parentSlot = (slot - 1) >>> 1;
+            int parent = heap[parentSlot];
+            if (keys[parent] <= key) {
+                break;
+            }
+            heap[slot] = parent;
+            position[parent] = slot;
+            slot = parentSlot;
+        }
+        heap[slot] = id;
+        position[id] = slot;
+    }
+
+    private void siftDown(int slot) {
+        int id = heap[slot];
+        long key = keys[id];
+        int half = size >>> 1;
+        while (slot < half) {
+            int childSlot = 2 * slot + 1;
+            int child = heap[childSlot];
+            int rightSlot = childSlot + 1;
+            if (rightSlot < size && keys[heap[rightSlot]] < keys[child]) {
+                childSlot = rightSlot;
+                child = heap[childSlot];
+            }
+            if (key <= keys[child]) {
+                break;
+            }
+            heap[slot] = child;
+            position[child] = slot;
+            slot = childSlot;
+        }
+        heap[slot] = id;
+        position[id] = slot;
+    }
+}
@@ -0,0 +1,206 @@
+package mycontroller.AStarSearch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Jump Point Search adapted to 4-connected grids with mixed step costs.
+ *
+ * On uniform road, vertical runs are the primary moves and horizontal runs
+ * only branch off at forced neighbours, so the many equal-cost orderings
+ * of the same moves are never queued. Moving vertically, every cell checks
+ * a horizontal run each way. Moving horizontally, it stops where a side
+ * cell opens up behind an obstacle.
+ *
+ * Anything that isn't plain road (lava, other traps) is treated as a jump
+ * point. It is expanded in all four directions like normal A*, so cost
+ * changes are never jumped over. Relies on the same tile rules as
+ * SearchGrid, and results match AStarSearch in cost.
+ */
+public class JumpPointSearch {
+    private static final int NO_CELL = -1;
+
+    private final SearchContext context;
+    private final SearchGrid grid;
+    private int goal;
+    private int expandedNodes;
+
+    public JumpPointSearch(SearchContext context, SearchGrid grid) {
+        this.context = context;
+        this.grid = grid;
+    }
+
+    /**
+     * @param startX
+     * @param startY
+     * @param goalX
+     * @param goalY
+     * @return path as a list of nodes, every cell included, empty if unreachable
+     */
+    public List<Node> findPath(int startX, int startY, int goalX, int goalY) {
+        context.beginSearch();
+        expandedNodes = 0;
+        int start = grid.getCellId(startX, startY);
+        goal = grid.getCellId(goalX, goalY);
+        touch(start);
+        context.setPathData(start, SearchContext.NO_PARENT, 0);
+        IndexedMinHeap openList = context.getOpenList();
+        openList.insertOrUpdate(start, context.getF(start));
+
+        while (!openList.isEmpty()) {
+            int current = openList.poll();
+            context.close(current);
+            expandedNodes++;
+            if (current == goal) {
+                return getPath(current);
+            }
+            expand(current);
+        }
+        return new ArrayList<>();
+    }
+
+    private void expand(int current) {
+        int x = grid.getX(current);
+        int y = grid.getY(current);
+        int parent = context.getParent(current);
+
+        // the start and non-road cells fall back to a plain four-way expansion
+        if (parent == SearchContext.NO_PARENT || !isUniform(current)) {
+            tryJump(current, 1, 0);
+            tryJump(current, -1, 0);
+            tryJump(current, 0, 1);
+            tryJump(current, 0, -1);
+            return;
+        }
+
+        int dx = Integer.signum(x - grid.getX(parent));
+        int dy = Integer.signum(y - grid.getY(parent));
+        if (dx != 0) {
+            tryJump(current, dx, 0);
+            if (isForcedSide(x, y, dx, 1)) {
+                tryJump(current, 0, 1);
+            }
+            if (isForcedSide(x, y, dx, -1)) {
+                tryJump(current, 0, -1);
+            }
+        } else {
+            tryJump(current, 0, dy);
+            tryJump(current, 1, 0);
+            tryJump(current, -1, 0);
+        }
+    }
+
+    private void tryJump(int current, int dx, int dy) {
+        int jumpPoint = jump(grid.getX(current), grid.getY(current), dx, dy);
+        if (jumpPoint == NO_CELL || context.isClosed(jumpPoint)) {
+            return;
+        }
+        if (!context.isTouched(jumpPoint)) {
+            touch(jumpPoint);
+        }
+        // every cell left on the way is plain road, apart from the one the jump starts from
+        int steps = manhattan(current, jumpPoint);
+        int gCost = context.getG(current) + grid.getStepCost(current) + (steps - 1) * AStarSearch.DEFAULT_ROAD_COST;
+        if (gCost < context.getG(jumpPoint)) {
+            context.setPathData(jumpPoint, current, gCost);
+            context.getOpenList().insertOrUpdate(jumpPoint, context.getF(jumpPoint));
+        }
+    }
+
+    /**
+     * walk from (x, y) in one direction until something worth stopping for
+     * @return the jump point reached, or NO_CELL if the run hits an obstacle
+     */
+    private int jump(int x, int y, int dx, int dy) {
+        while (true) {
+            x += dx;
+            y += dy;
+            if (!grid.isInside(x, y)) {
+                return NO_CELL;
+            }
+            int id = grid.getCellId(x, y);
+            if (!grid.isPassable(id)) {
+                return NO_CELL;
+            }
+            if (id == goal || !isUniform(id)) {
+                return id;
+            }
+            if (dx != 0) {
+                if (isForcedSide(x, y, dx, 1) || isForcedSide(x, y, dx, -1)) {
+                    return id;
+                }
+            } else if (jump(x, y, 1, 0) != NO_CELL || jump(x, y, -1, 0) != NO_CELL) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * moving horizontally, the side cell is forced if it can't be reached as cheaply from behind,
+     * or if it is not plain road itself
+     */
+    private boolean isForcedSide(int x, int y, int dx, int side) {
+        int sideY = y + side;
+        if (!grid.isInside(x, sideY) || !grid.isPassable(grid.getCellId(x, sideY))) {
+            return false;
+        }
+        if (!isUniform(grid.getCellId(x, sideY))) {
+            return true;
+        }
+        int behindX = x - dx;
+        return !grid.isInside(behindX, sideY) || !isUniform(grid.getCellId(behindX, sideY));
+    }
+
+    private boolean isUniform(int id) {
+        return grid.isPassable(id) && grid.getStepCost(id) == AStarSearch.DEFAULT_ROAD_COST;
+    }
+
+    /**
+     * fill in the straight runs between jump points
+     */
+    private List<Node> getPath(int last) {
+        List<Node> path = new ArrayList<>();
+        int current = last;
+        int parent = context.getParent(current);
+        while (parent != SearchContext.NO_PARENT) {
+            int dx = Integer.signum(grid.getX(parent) - grid.getX(current));
+            int dy = Integer.signum(grid.getY(parent) - grid.getY(current));
+            int g = context.getG(current);
+            for (int id = current; id != parent; id = grid.getCellId(grid.getX(id) + dx, grid.getY(id) + dy)) {
+                path.add(createNode(id, g));
+                g -= AStarSearch.DEFAULT_ROAD_COST;
+            }
+            current = parent;
+            parent = context.getParent(current);
+        }
+        path.add(createNode(current, 0));
+        Collections.reverse(path);
+        for (int i = 1; i < path.size(); i++) {
+            path.get(i).setParent(path.get(i - 1));
+        }
+        return path;
+    }
+
+    private Node createNode(int id, int g) {
+        Node node = new Node(grid.getX(id), grid.getY(id), grid.getTile(id));
+        node.setG(g);
+        return node;
+    }
+
+    private void touch(int id) {
+        context.touch(id, manhattan(id, goal) * AStarSearch.DEFAULT_ROAD_COST);
+    }
+
+    private int manhattan(int a, int b) {
+        return Math.abs(grid.getX(a) - grid.getX(b)) + Math.abs(grid.getY(a) - grid.getY(b));
+    }
+
+    /**
+     * number of jump points taken off the open list by the last findPath()
+     * @return expanded node count
+     */
+    public int getExpandedNodes() {
+        return expandedNodes;
+    }
+}
@@ -0,0 +1,238 @@
+package mycontroller.AStarSearch;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Picks the order to collect keys in that minimises the total drive from
+ * the car, through every key, to the exit.
+ *
+ * Distances come in as a matrix where row/column 0 is the car, 1..n are
+ * the keys and n + 1 is the exit. They don't have to be symmetric, since
+ * leaving lava costs more than entering it.
+ *
+ * Up to EXACT_KEY_LIMIT keys the order is exact, found with Held-Karp
+ * bitmask DP. Each layer of equally sized key subsets is split across a
+ * ForkJoinPool. Above the limit, a nearest-neighbour order is improved
+ * with 2-opt until no reversal helps.
+ */
+public class KeyOrderSolver {
+    public static final int EXACT_KEY_LIMIT = 15;
+    private static final long UNREACHABLE = Long.MAX_VALUE / 4;
+    // below this many subsets in a layer it's cheaper to stay on one thread
+    private static final int SEQUENTIAL_THRESHOLD = 256;
+
+    private final ForkJoinPool pool;
+
+    public KeyOrderSolver() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public KeyOrderSolver(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @param distances (n + 2) x (n + 2) matrix, car first and exit last
+     * @return key indices 0..n-1 in the order to collect them
+     */
+    public int[] solve(int[][] distances) {
+        int keys = distances.length - 2;
+        if (keys <= 0) {
+            return new int[0];
+        }
+        if (keys <= EXACT_KEY_LIMIT) {
+            return solveExact(distances, keys);
+        }
+        return solveHeuristic(distances, keys);
+    }
+
+    /**
+     * @param distances
+     * @param order key indices
+     * @return cost of car -> keys in order -> exit
+     */
+    public static long getRouteCost(int[][] distances, int[] order) {
+        int exit = distances.length - 1;
+        int previous = 0;
+        long cost = 0;
+        for (int key : order) {
+            cost += distances[previous][key + 1];
+            previous = key + 1;
+        }
+        return cost + distances[previous][exit];
+    }
+
+    private int[] solveExact(final int[][] distances, final int keys) {
+        // best[mask * keys + last]: cheapest way to collect the keys in mask, ending on last
+        final long[] best = new long[(1 << keys) * keys];
+        Arrays.fill(best, UNREACHABLE);
+        for (int key = 0; key < keys; key++) {
+            best[(1 << key) * keys + key] = distances[0][key + 1];
+        }
+
+        for (int size = 2; size <= keys; size++) {
+            final int[] masks = subsetsOfSize(keys, size);
+            if (masks.length < SEQUENTIAL_THRESHOLD) {
+                fillLayer(best, distances, keys, masks, 0, masks.length);
+            } else {
+                pool.invoke(new LayerTask(best, distances, keys, masks, 0, masks.length));
+            }
+        }
+
+        int full = (1 << keys) - 1;
+        int exit = keys + 1;
+        int last = 0;
+        long bestCost = Long.MAX_VALUE;
+        for (int key = 0; key < keys; key++) {
+            long cost = best[full * keys + key] + distances[key + 1][exit];
+            if (cost < bestCost) {
+                bestCost = cost;
+                last = key;
+            }
+        }
+
+        // walk back through the table, finding which previous key gave each entry its value
+        int[] order = new int[keys];
+        int mask = full;
+        for (int position = keys - 1; position > 0; position--) {
+            order[position] = last;
+            int previousMask = mask & ~(1 << last);
+            int previous = -1;
+            for (int key = 0; key < keys; key++) {
+                if ((previousMask & (1 << key)) != 0 && best[previousMask * keys + key]
+                        + distances[key + 1][last + 1] == best[mask * keys + last]) {
+                    previous = key;
+                    break;
+                }
+            }
+            mask = previousMask;
+            last = previous;
+        }
+        order[0] = last;
+        return order;
+    }
+
+    private static void fillLayer(long[] best, int[][] distances, int keys, int[] masks, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int mask = masks[i];
+            for (int last = 0; last < keys; last++) {
+                if ((mask & (1 << last)) == 0) {
+                    continue;
+                }
+                int previousMask = mask & ~(1 << last);
+                long cheapest = UNREACHABLE;
+                for (int previous = 0; previous < keys; previous++) {
+                    if ((previousMask & (1 << previous)) != 0) {
+                        cheapest = Math.min(cheapest,
+                                best[previousMask * keys + previous] + distances[previous + 1][last + 1]);
+                    }
+                }
+                best[mask * keys + last] = cheapest;
+            }
+        }
+    }
+
+    /**
+     * every bitmask over keys bits with exactly size bits set, in increasing order (Gosper's hack)
+     */
+    private static int[] subsetsOfSize(int keys, int size) {
+        int[] masks = new int[binomial(keys, size)];
+        int mask = (1 << size) - 1;
+        for (int i = 0; i < masks.length; i++) {
+            masks[i] = mask;
+            int lowest = mask & -mask;
+            int carried = mask + lowest;
+            mask = (((carried ^ mask) >>> 2) / lowest) | carried;
+        }
+        return masks;
+    }
+
+    private static int binomial(int n, int k) {
+        long result = 1;
+        for (int i = 1; i <= k; i++) {
+            result = result * (n - k + i) / i;
+        }
+        return (int) result;
+    }
+
+    /**
+     * fills one layer of the table, subsets in a layer only read the layer below
+     */
+    private static class LayerTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] best;
+        private final int[][] distances;
+        private final int keys;
+        private final int[] masks;
+        private final int from;
+        private final int to;
+
+        LayerTask(long[] best, int[][] distances, int keys, int[] masks, int from, int to) {
+            this.best = best;
+            this.distances = distances;
+            this.keys = keys;
+            this.masks = masks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                fillLayer(best, distances, keys, masks, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new LayerTask(best, distances, keys, masks, from, middle),
+                    new LayerTask(best, distances, keys, masks, middle, to));
+        }
+    }
+
+    private int[] solveHeuristic(int[][] distances, int keys) {
+        int[] order = new int[keys];
+        boolean[] taken = new boolean[keys];
+        int previous = 0;
+        for (int position = 0; position < keys; position++) {
+            int nearest = -1;
+            for (int key = 0; key < keys; key++) {
+                if (!taken[key] && (nearest == -1 || distances[previous][key + 1] < distances[previous][nearest + 1])) {
+                    nearest = key;
+                }
+            }
+            taken[nearest] = true;
+            order[position] = nearest;
+            previous = nearest + 1;
+        }
+
+        // distances aren't symmetric, so every reversal is costed in full
+        long cost = getRouteCost(distances, order);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int i = 0; i < keys - 1; i++) {
+                for (int j = i + 1; j < keys; j++) {
+                    reverse(order, i, j);
+                    long candidate = getRouteCost(distances, order);
+                    if (candidate < cost) {
+                        cost = candidate;
+                        improved = true;
+                    } else {
+                        reverse(order, i, j);
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    private static void reverse(int[] order, int from, int to) {
+        while (from < to) {
+            int swap = order[from];
+            order[from++] = order[to];
+            order[to--] = swap;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package mycontroller.AStarSearch;
+
+import java.util.Arrays;
+
+import mycontroller.MapChangeListener;
+import tiles.MapTile;
+
+/**
+ * ALT heuristic: A* with landmarks and the triangle inequality.
+ *
+ * A few landmark cells are picked by farthest-point selection. The exact
+ * cost to and from each landmark is stored for every cell. For any cell n
+ * and goal t, both d(n, L) - d(t, L) and d(L, t) - d(L, n) are lower
+ * bounds on d(n, t). The largest of these over all landmarks, or the
+ * scaled Manhattan distance if that is larger, is used as h. In mazes and
+ * around lava this is much tighter than Manhattan alone.
+ *
+ * The tables describe the map as it was when they were built, and after a
+ * tile change their bounds may overestimate. Changes are only counted, and
+ * until REBUILD_THRESHOLD of them have piled up the estimate falls back to
+ * the scaled Manhattan distance alone, so paths stay optimal. The next
+ * estimate after that rebuilds the tables.
+ */
+public class LandmarkHeuristic implements MapChangeListener {
+    public static final int DEFAULT_LANDMARKS = 8;
+    public static final int REBUILD_THRESHOLD = 32;
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+
+    private final SearchGrid grid;
+    private final int landmarkCount;
+    private int[] landmarks = new int[0];
+    // toLandmark[k][n] = d(n, landmark k), fromLandmark[k][n] = d(landmark k, n)
+    private int[][] toLandmark = new int[0][];
+    private int[][] fromLandmark = new int[0][];
+    private final IndexedMinHeap openList;
+    private int changesSinceBuild = 0;
+    private boolean built = false;
+    private int builds = 0;
+
+    public LandmarkHeuristic(SearchGrid grid) {
+        this(grid, DEFAULT_LANDMARKS);
+    }
+
+    public LandmarkHeuristic(SearchGrid grid, int landmarkCount) {
+        this.grid = grid;
+        this.landmarkCount = landmarkCount;
+        this.openList = new IndexedMinHeap(grid.getCellCount());
+    }
+
+    /**
+     * lower bound on the cost of moving from a cell to the goal
+     * @param id
+     * @param goal
+     * @return
+     */
+    public int estimate(int id, int goal) {
+        if (!built || changesSinceBuild >= REBUILD_THRESHOLD) {
+            rebuild();
+        }
+        int best = (Math.abs(grid.getX(id) - grid.getX(goal)) + Math.abs(grid.getY(id) - grid.getY(goal)))
+                * AStarSearch.DEFAULT_ROAD_COST;
+        if (changesSinceBuild > 0) {
+            return best;
+        }
+        for (int k = 0; k < landmarks.length; k++) {
+            int[] to = toLandmark[k];
+            int[] from = fromLandmark[k];
+            if (to[id] < INFINITY && to[goal] < INFINITY) {
+                best = Math.max(best, to[id] - to[goal]);
+            }
+            if (from[goal] < INFINITY && from[id] < INFINITY) {
+                best = Math.max(best, from[goal] - from[id]);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * pick the landmarks again and recompute their tables
+     */
+    public void rebuild() {
+        int cells = grid.getCellCount();
+        int seed = -1;
+        for (int id = 0; id < cells && seed == -1; id++) {
+            if (grid.isPassable(id)) {
+                seed = id;
+            }
+        }
+        built = true;
+        changesSinceBuild = 0;
+        builds++;
+        if (seed == -1) {
+            landmarks = new int[0];
+            return;
+        }
+
+        // farthest-point selection: each landmark is the cell farthest from all the ones picked so far
+        int[] nearestLandmark = new int[cells];
+        int[] scratch = new int[cells];
+        sweep(seed, true, scratch);
+        int[] picked = new int[landmarkCount];
+        int[][] to = new int[landmarkCount][];
+        int[][] from = new int[landmarkCount][];
+        int count = 0;
+        int next = farthest(scratch);
+        Arrays.fill(nearestLandmark, INFINITY);
+        while (count < landmarkCount && next != -1) {
+            picked[count] = next;
+            from[count] = new int[cells];
+            to[count] = new int[cells];
+            sweep(next, true, from[count]);
+            sweep(next, false, to[count]);
+            for (int id = 0; id < cells; id++) {
+                nearestLandmark[id] = Math.min(nearestLandmark[id], from[count][id]);
+            }
+            count++;
+            next = farthest(nearestLandmark);
+            if (next != -1 && nearestLandmark[next] == 0) {
+                next = -1;
+            }
+        }
+        landmarks = Arrays.copyOf(picked, count);
+        toLandmark = Arrays.copyOf(to, count);
+        fromLandmark = Arrays.copyOf(from, count);
+    }
+
+    /**
+     * @return the reachable cell with the largest distance, -1 if there is none
+     */
+    private int farthest(int[] dist) {
+        int best = -1;
+        for (int id = 0; id < dist.length; id++) {
+            if (dist[id] < INFINITY && (best == -1 || dist[id] > dist[best])) {
+                best = id;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Dijkstra from (outwards) or to (inwards) a cell, a cell pays its own step cost to move on
+     * @param source
+     * @param outwards
+     * @param dist filled with the cost from source to every cell, or from every cell to source
+     */
+    private void sweep(int source, boolean outwards, int[] dist) {
+        Arrays.fill(dist, INFINITY);
+        openList.clear();
+        dist[source] = 0;
+        openList.insertOrUpdate(source, 0);
+        while (!openList.isEmpty()) {
+            int cell = openList.poll();
+            int x = grid.getX(cell);
+            int y = grid.getY(cell);
+            relax(cell, x - 1, y, outwards, dist);
+            relax(cell, x + 1, y, outwards, dist);
+            relax(cell, x, y - 1, outwards, dist);
+            relax(cell, x, y + 1, outwards, dist);
+        }
+    }
+
+    private void relax(int cell, int x, int y, boolean outwards, int[] dist) {
+        if (!grid.isInside(x, y)) {
+            return;
+        }
+        int neighbour = grid.getCellId(x, y);
+        if (!grid.isPassable(neighbour)) {
+            return;
+        }
+        int cost = dist[cell] + (outwards ? grid.getStepCost(cell) : grid.getStepCost(neighbour));
+        if (cost < dist[neighbour]) {
+            dist[neighbour] = cost;
+            openList.insertOrUpdate(neighbour, cost);
+        }
+    }
+
+    @Override
+    public void tileChanged(int x, int y, MapTile tile) {
+        if (grid.isInside(x, y) && grid.updateCell(x, y, tile)) {
+            changesSinceBuild++;
+        }
+    }
+
+    /**
+     * use tables saved from an earlier build on the same map, e.g. by MapAnalysisCache, instead of building them
+     * @param landmarkCells
+     * @param to to[k][n] = d(n, landmark k)
+     * @param from from[k][n] = d(landmark k, n)
+     */
+    public void restore(int[] landmarkCells, int[][] to, int[][] from) {
+        landmarks = landmarkCells.clone();
+        toLandmark = to;
+        fromLandmark = from;
+        built = true;
+        changesSinceBuild = 0;
+    }
+
+    /**
+     * @param index landmark number, below getLandmarks().length
+     * @return d(n, landmark) for every cell n, not to be changed
+     */
+    public int[] getToTable(int index) {
+        return toLandmark[index];
+    }
+
+    /**
+     * @param index landmark number, below getLandmarks().length
+     * @return d(landmark, n) for every cell n, not to be changed
+     */
+    public int[] getFromTable(int index) {
+        return fromLandmark[index];
+    }
+
+    /**
+     * @return true once tables have been built or restored
+     */
+    public boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * @return number of tile changes the tables don't include
+     */
+    public int getChangesSinceBuild() {
+        return changesSinceBuild;
+    }
+
+    /**
+     * @return cell ids of the landmarks currently in use
+     */
+    public int[] getLandmarks() {
+        return landmarks.clone();
+    }
+
+    /**
+     * @return how many times the tables have been built
+     */
+    public int getBuilds() {
+        return builds;
+    }
+
+    public SearchGrid getGrid() {
+        return grid;
+    }
+}
@@ -0,0 +1,133 @@
+package mycontroller.AStarSearch;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import mycontroller.HashMapTile;
+import mycontroller.TilesChecker;
+import tiles.MapTile;
+import utilities.Coordinate;
+
+/**
+ * AStarSearch as it was before the indexed heap, kept only as the baseline
+ * row of SearchBenchmark.
+ *
+ * Every query builds a Node per cell, and the open and closed lists are a
+ * PriorityQueue and an ArrayList, so contains() and remove() scan them.
+ */
+class LegacyAStarSearch {
+    private static final int DEFAULT_ROAD_COST = 10;
+    private static final int DEFAULT_LAVA_COST = 200;
+    private Node[][] searchArea;
+    private PriorityQueue<Node> openList;
+    private List<Node> closedList;
+    private Node initialNode;
+    private Node finalNode;
+    private HashMap<Coordinate, HashMapTile> map;
+    private ArrayList<MapTile> tilesToAvoid;
+
+    LegacyAStarSearch(int rows, int cols, Node initialNode, Node finalNode, HashMap<Coordinate, HashMapTile> map,
+                      ArrayList<MapTile> tilesToAvoid) {
+        this.map = map;
+        this.initialNode = initialNode;
+        this.finalNode = finalNode;
+        this.searchArea = new Node[rows][cols];
+        this.openList = new PriorityQueue<Node>(new Comparator<Node>() {
+            @Override
+            public int compare(Node node0, Node node1) {
+                return node0.getF() < node1.getF() ? -1 : node0.getF() > node1.getF() ? 1 : 0;
+            }
+        });
+        setNodes();
+        this.closedList = new ArrayList<>();
+        this.tilesToAvoid = tilesToAvoid;
+    }
+
+    private void setNodes() {
+        for (int i = 0; i < searchArea.length; i++) {
+            for (int j = 0; j < searchArea[0].length; j++) {
+                HashMapTile hashMapTile = map.get(new Coordinate(i, j));
+                Node node = new Node(i, j, hashMapTile.getTile());
+                node.calculateHeuristic(finalNode);
+                this.searchArea[i][j] = node;
+            }
+        }
+    }
+
+    /**
+     * @return path as a list of nodes, empty if the target can't be reached
+     */
+    List<Node> findPath() {
+        openList.add(initialNode);
+        while (openList.size() != 0) {
+            Node currentNode = openList.poll();
+            closedList.add(currentNode);
+            if (currentNode.equals(finalNode)) {
+                return getPath(currentNode);
+            } else {
+                addAdjacentNodes(currentNode);
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    private List<Node> getPath(Node currentNode) {
+        List<Node> path = new ArrayList<Node>();
+        path.add(currentNode);
+        Node parent;
+        while ((parent = currentNode.getParent()) != null) {
+            path.add(0, parent);
+            currentNode = parent;
+        }
+        return path;
+    }
+
+    private void addAdjacentNodes(Node currentNode) {
+        int row = currentNode.getX();
+        int col = currentNode.getY();
+        if (row - 1 >= 0) {
+            checkNode(currentNode, col, row - 1);
+        }
+        if (col - 1 >= 0) {
+            checkNode(currentNode, col - 1, row);
+        }
+        if (col + 1 < searchArea[0].length) {
+            checkNode(currentNode, col + 1, row);
+        }
+        if (row + 1 < searchArea.length) {
+            checkNode(currentNode, col, row + 1);
+        }
+    }
+
+    private void checkNode(Node currentNode, int col, int row) {
+        int cost = DEFAULT_ROAD_COST;
+        if (TilesChecker.checkForLavaTrap(currentNode.getTile())) {
+            cost = DEFAULT_LAVA_COST;
+        }
+
+        Node adjacentNode = searchArea[row][col];
+        if (!adjacentNode.isTileToAvoid(tilesToAvoid) && !closedList.contains(adjacentNode)) {
+            if (!openList.contains(adjacentNode)) {
+                adjacentNode.setNodeData(currentNode, cost);
+                openList.add(adjacentNode);
+            } else {
+                boolean changed = adjacentNode.checkBetterPath(currentNode, cost);
+                if (changed) {
+                    // re-add so the PriorityQueue sorts the node by its new f
+                    openList.remove(adjacentNode);
+                    openList.add(adjacentNode);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return nodes moved to the closed list by the last findPath()
+     */
+    int getExpandedNodes() {
+        return closedList.size();
+    }
+}
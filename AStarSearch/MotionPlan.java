@@ -0,0 +1,289 @@
+package mycontroller.AStarSearch;
+
+import java.util.List;
+
+import world.WorldSpatial;
+
+/**
+ * A path compiled once into straight runs for the car to drive.
+ *
+ * The runs are stored back to back in one int[] as (heading, cells)
+ * pairs: drive that many cells in that heading, then turn. A cursor holds
+ * the run the car is in and how far along it the car is. The distance to
+ * the next turn is therefore a read rather than a scan, and following the
+ * car from cell to cell allocates nothing.
+ *
+ * setSpeedProfile() works out, once per plan, the speed each run must
+ * end at and how many cells before its end braking must begin. Until
+ * then, full acceleration is allowed. getTargetSpeed() is a lookup from
+ * these tables.
+ */
+public class MotionPlan {
+    private static final WorldSpatial.Direction[] HEADINGS = WorldSpatial.Direction.values();
+    // cells the car may have crossed since the last advance() and still be on the plan
+    private static final int MAX_SKIPPED_CELLS = 2;
+
+    private final int[] segments;
+    private final int segmentCount;
+    private int x;
+    private int y;
+    private int segment = 0; // run holding the car's next move
+    private int driven = 0; // cells of that run already driven
+    private int remainingCells;
+    private float maxSpeed = Float.MAX_VALUE;
+    private float[] endSpeeds = null; // speed to be down to by the end of each run
+    private int[] brakeCells = null; // cells before the end of each run where braking begins
+
+    /**
+     * @param startX
+     * @param startY
+     * @param segments (heading ordinal, cells) pairs
+     * @param segmentCount number of pairs in use
+     */
+    public MotionPlan(int startX, int startY, int[] segments, int segmentCount) {
+        this.x = startX;
+        this.y = startY;
+        this.segments = segments;
+        this.segmentCount = segmentCount;
+        for (int i = 0; i < segmentCount; i++) {
+            remainingCells += segments[2 * i + 1];
+        }
+    }
+
+    /**
+     * compile a path in one pass, runs between two nodes more than a cell apart are kept whole
+     * @param path from the car's cell to the target
+     * @return plan starting at the first node, finished straight away if there is nowhere to go
+     */
+    public static MotionPlan compile(List<Node> path) {
+        if (path == null || path.isEmpty()) {
+            return new MotionPlan(0, 0, new int[0], 0);
+        }
+        int[] segments = new int[8];
+        int count = 0;
+        Node previous = path.get(0);
+        for (int i = 1; i < path.size(); i++) {
+            Node next = path.get(i);
+            int cells = Math.abs(next.getX() - previous.getX()) + Math.abs(next.getY() - previous.getY());
+            if (cells == 0) {
+                continue;
+            }
+            int heading = getDirection(previous.getX(), previous.getY(), next.getX(), next.getY()).ordinal();
+            if (count > 0 && segments[2 * count - 2] == heading) {
+                segments[2 * count - 1] += cells;
+            } else {
+                if (2 * count == segments.length) {
+                    int[] grown = new int[segments.length * 2];
+                    System.arraycopy(segments, 0, grown, 0, segments.length);
+                    segments = grown;
+                }
+                segments[2 * count] = heading;
+                segments[2 * count + 1] = cells;
+                count++;
+            }
+            previous = next;
+        }
+        return new MotionPlan(path.get(0).getX(), path.get(0).getY(), segments, count);
+    }
+
+    /**
+     * move the cursor to the car's cell if the car has driven on along the plan
+     * @param carX
+     * @param carY
+     * @return true if the car is on the plan
+     */
+    public boolean advance(int carX, int carY) {
+        if (carX == x && carY == y) {
+            return true;
+        }
+        // look a few cells ahead without moving the cursor, in case the car is somewhere else entirely
+        int aheadX = x;
+        int aheadY = y;
+        int aheadSegment = segment;
+        int aheadDriven = driven;
+        for (int step = 0; step < MAX_SKIPPED_CELLS && aheadSegment < segmentCount; step++) {
+            WorldSpatial.Direction heading = HEADINGS[segments[2 * aheadSegment]];
+            aheadX += getDeltaX(heading);
+            aheadY += getDeltaY(heading);
+            if (++aheadDriven == segments[2 * aheadSegment + 1]) {
+                aheadSegment++;
+                aheadDriven = 0;
+            }
+            if (carX == aheadX && carY == aheadY) {
+                remainingCells -= step + 1;
+                x = aheadX;
+                y = aheadY;
+                segment = aheadSegment;
+                driven = aheadDriven;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Braking distances scale with the drop in speed squared, where slowing from maxSpeed to turningSpeed
+     * takes brakingCells. A run ends at turningSpeed before a turn, and at the end of the plan. Before a
+     * u-turn, or a one cell jog between two turns, it ends at cornerSpeed.
+     * @param maxSpeed
+     * @param turningSpeed
+     * @param cornerSpeed
+     * @param brakingCells
+     */
+    public void setSpeedProfile(float maxSpeed, float turningSpeed, float cornerSpeed, int brakingCells) {
+        this.maxSpeed = maxSpeed;
+        endSpeeds = new float[segmentCount];
+        brakeCells = new int[segmentCount];
+        float fullBrake = maxSpeed * maxSpeed - turningSpeed * turningSpeed;
+        for (int i = 0; i < segmentCount; i++) {
+            float endSpeed = turningSpeed;
+            if (i + 1 < segmentCount) {
+                boolean uTurn = getSegmentHeading(i + 1) == getRightOf(getRightOf(getSegmentHeading(i)));
+                boolean jog = i + 2 < segmentCount && getSegmentLength(i + 1) == 1;
+                if (uTurn || jog) {
+                    endSpeed = cornerSpeed;
+                }
+            }
+            endSpeeds[i] = endSpeed;
+            brakeCells[i] = fullBrake <= 0 ? brakingCells
+                    : (int) Math.ceil(brakingCells * (maxSpeed * maxSpeed - endSpeed * endSpeed) / fullBrake);
+        }
+    }
+
+    /**
+     * speed the car should be at in its current cell, given by setSpeedProfile()
+     * @return the run's end speed once braking has begun, otherwise the top speed, 0 once finished
+     */
+    public float getTargetSpeed() {
+        if (isFinished()) {
+            return 0;
+        }
+        if (endSpeeds == null) {
+            return maxSpeed;
+        }
+        return getDistanceUntilTurn() <= brakeCells[segment] ? endSpeeds[segment] : maxSpeed;
+    }
+
+    /**
+     * @param index
+     * @return speed the run must end at, the top speed if there is no profile
+     */
+    public float getEndSpeed(int index) {
+        return endSpeeds == null ? maxSpeed : endSpeeds[index];
+    }
+
+    /**
+     * @param index
+     * @return cells before the end of the run where braking begins, 0 if there is no profile
+     */
+    public int getBrakeCells(int index) {
+        return brakeCells == null ? 0 : brakeCells[index];
+    }
+
+    /**
+     * @return true once the car has reached the end of the plan
+     */
+    public boolean isFinished() {
+        return segment >= segmentCount;
+    }
+
+    /**
+     * @return heading of the car's next move, null once finished
+     */
+    public WorldSpatial.Direction getHeading() {
+        return isFinished() ? null : HEADINGS[segments[2 * segment]];
+    }
+
+    /**
+     * @return heading after the next turn, null if the plan ends first
+     */
+    public WorldSpatial.Direction getNextHeading() {
+        return segment + 1 >= segmentCount ? null : HEADINGS[segments[2 * segment + 2]];
+    }
+
+    /**
+     * cells left to drive before the car has to turn or stop
+     * @return 0 once finished
+     */
+    public int getDistanceUntilTurn() {
+        return isFinished() ? 0 : segments[2 * segment + 1] - driven;
+    }
+
+    public int getRemainingCells() {
+        return remainingCells;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * @return index of the run the car is in
+     */
+    public int getSegment() {
+        return segment;
+    }
+
+    public WorldSpatial.Direction getSegmentHeading(int index) {
+        return HEADINGS[segments[2 * index]];
+    }
+
+    public int getSegmentLength(int index) {
+        return segments[2 * index + 1];
+    }
+
+    /**
+     * @param from
+     * @param to
+     * @return which way to turn, null if there is no need to, a u-turn starts with a left turn
+     */
+    public static WorldSpatial.RelativeDirection getTurn(WorldSpatial.Direction from, WorldSpatial.Direction to) {
+        if (from == to) {
+            return null;
+        }
+        return to == getRightOf(from) ? WorldSpatial.RelativeDirection.RIGHT : WorldSpatial.RelativeDirection.LEFT;
+    }
+
+    public static WorldSpatial.Direction getRightOf(WorldSpatial.Direction heading) {
+        switch (heading) {
+            case EAST:
+                return WorldSpatial.Direction.SOUTH;
+            case SOUTH:
+                return WorldSpatial.Direction.WEST;
+            case WEST:
+                return WorldSpatial.Direction.NORTH;
+            default:
+                return WorldSpatial.Direction.EAST;
+        }
+    }
+
+    /**
+     * east is +x and north is +y, as in Sensor's views
+     */
+    public static WorldSpatial.Direction getDirection(int fromX, int fromY, int toX, int toY) {
+        if (toX > fromX) {
+            return WorldSpatial.Direction.EAST;
+        } else if (toX < fromX) {
+            return WorldSpatial.Direction.WEST;
+        } else if (toY > fromY) {
+            return WorldSpatial.Direction.NORTH;
+        }
+        return WorldSpatial.Direction.SOUTH;
+    }
+
+    public static int getDeltaX(WorldSpatial.Direction heading) {
+        return heading == WorldSpatial.Direction.EAST ? 1 : heading == WorldSpatial.Direction.WEST ? -1 : 0;
+    }
+
+    public static int getDeltaY(WorldSpatial.Direction heading) {
+        return heading == WorldSpatial.Direction.NORTH ? 1 : heading == WorldSpatial.Direction.SOUTH ? -1 : 0;
+    }
+}
@@ -0,0 +1,259 @@
+package mycontroller.AStarSearch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import utilities.Coordinate;
+
+/**
+ * Finds which of several targets is nearest by true path cost, and the
+ * path to it, with a single Dijkstra sweep from the start.
+ *
+ * The sweep stops at the first target taken off the open list. Choosing
+ * among N candidates therefore costs one search instead of N separate A*
+ * runs. Costs follow the same rules as AStarSearch.
+ *
+ * With only a few targets, e.g. the nearest health traps from GameMap's
+ * index, the sweep is guided like A* by the distance to the closest of
+ * them, so it heads their way instead of spreading out in every direction.
+ * A weight above 1 leans harder on that guide: the path found costs at most
+ * the weight times the path to the nearest target.
+ *
+ * findNearestAll() answers independent queries in parallel on a read-only
+ * grid snapshot.
+ */
+public class MultiTargetSearch {
+    private static final int MAX_GUIDING_TARGETS = 8;
+    private final SearchContext context;
+    private final SearchGrid grid;
+    // a cell is a target of the current query if its mark equals the context's generation
+    private final int[] targetMark;
+    private int expandedNodes;
+    // targets the search is guided towards, none if there are more than MAX_GUIDING_TARGETS
+    private final int[] guideX = new int[MAX_GUIDING_TARGETS];
+    private final int[] guideY = new int[MAX_GUIDING_TARGETS];
+    private int guideCount;
+    private double weight = 1.0;
+
+    public MultiTargetSearch(SearchContext context, SearchGrid grid) {
+        this.context = context;
+        this.grid = grid;
+        this.targetMark = new int[grid.getCellCount()];
+    }
+
+    /**
+     * @param startX
+     * @param startY
+     * @param targets
+     * @return the nearest reachable target and the path to it, null if none can be reached
+     */
+    public Result findNearest(int startX, int startY, List<Coordinate> targets) {
+        return findNearest(startX, startY, targets, 1.0);
+    }
+
+    /**
+     * @param startX
+     * @param startY
+     * @param targets
+     * @param weight at least 1, f = g + weight * h, only has an effect while the search is guided
+     * @return a reachable target costing at most weight times the nearest one, and the path to it,
+     * null if none can be reached
+     */
+    public Result findNearest(int startX, int startY, List<Coordinate> targets, double weight) {
+        if (weight < 1.0) {
+            throw new IllegalArgumentException("weight must be at least 1: " + weight);
+        }
+        this.weight = weight;
+        context.beginSearch();
+        expandedNodes = 0;
+        int generation = context.getGeneration();
+        guideCount = 0;
+        boolean guided = targets.size() <= MAX_GUIDING_TARGETS;
+        int marked = 0;
+        for (Coordinate target : targets) {
+            // a target that can't be entered would never come off the open list
+            if (grid.isInside(target.x, target.y) && grid.isPassable(grid.getCellId(target.x, target.y))) {
+                targetMark[grid.getCellId(target.x, target.y)] = generation;
+                marked++;
+                if (guided) {
+                    guideX[guideCount] = target.x;
+                    guideY[guideCount] = target.y;
+                    guideCount++;
+                }
+            }
+        }
+        // nothing to find, don't sweep the whole reachable map to find it
+        if (marked == 0) {
+            return null;
+        }
+
+        int start = grid.getCellId(startX, startY);
+        context.touch(start, 0);
+        context.setPathData(start, SearchContext.NO_PARENT, 0);
+        IndexedMinHeap openList = context.getOpenList();
+        openList.insertOrUpdate(start, (long) Math.floor(weight * heuristic(startX, startY)));
+
+        while (!openList.isEmpty()) {
+            int current = openList.poll();
+            context.close(current);
+            expandedNodes++;
+            if (targetMark[current] == generation) {
+                return new Result(grid.getX(current), grid.getY(current), context.getG(current), getPath(current));
+            }
+            int x = grid.getX(current);
+            int y = grid.getY(current);
+            int gCost = context.getG(current) + grid.getStepCost(current);
+            relax(current, x - 1, y, gCost);
+            relax(current, x + 1, y, gCost);
+            relax(current, x, y - 1, gCost);
+            relax(current, x, y + 1, gCost);
+        }
+        return null;
+    }
+
+    private void relax(int current, int x, int y, int gCost) {
+        if (!grid.isInside(x, y)) {
+            return;
+        }
+        int next = grid.getCellId(x, y);
+        if (!grid.isPassable(next) || context.isClosed(next)) {
+            return;
+        }
+        if (!context.isTouched(next)) {
+            context.touch(next, 0);
+        }
+        if (gCost < context.getG(next)) {
+            context.setPathData(next, current, gCost);
+            context.getOpenList().insertOrUpdate(next, gCost + (long) Math.floor(weight * heuristic(x, y)));
+        }
+    }
+
+    /**
+     * scaled Manhattan distance to the closest guiding target, 0 when unguided
+     * consistent, so the first target off the open list is still the nearest by path cost
+     */
+    private int heuristic(int x, int y) {
+        if (guideCount == 0) {
+            return 0;
+        }
+        int nearest = Integer.MAX_VALUE;
+        for (int i = 0; i < guideCount; i++) {
+            nearest = Math.min(nearest, Math.abs(guideX[i] - x) + Math.abs(guideY[i] - y));
+        }
+        return nearest * AStarSearch.DEFAULT_ROAD_COST;
+    }
+
+    private List<Node> getPath(int last) {
+        List<Node> path = new ArrayList<>();
+        for (int id = last; id != SearchContext.NO_PARENT; id = context.getParent(id)) {
+            Node node = new Node(grid.getX(id), grid.getY(id), grid.getTile(id));
+            node.setG(context.getG(id));
+            path.add(node);
+        }
+        Collections.reverse(path);
+        for (int i = 1; i < path.size(); i++) {
+            path.get(i).setParent(path.get(i - 1));
+        }
+        return path;
+    }
+
+    /**
+     * cells taken off the open list by the last findNearest()
+     * @return expanded node count
+     */
+    public int getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    /**
+     * answer several queries at once on the common ForkJoinPool
+     * @param snapshot grid that nothing changes while the queries run, see SearchGrid.snapshot()
+     * @param queries
+     * @return one result per query, in the same order, null where no target is reachable
+     */
+    public static List<Result> findNearestAll(SearchGrid snapshot, List<Query> queries) {
+        return findNearestAll(snapshot, queries, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param snapshot grid that nothing changes while the queries run, see SearchGrid.snapshot()
+     * @param queries
+     * @param executor
+     * @return one result per query, in the same order, null where no target is reachable
+     */
+    public static List<Result> findNearestAll(final SearchGrid snapshot, List<Query> queries,
+            ExecutorService executor) {
+        List<Callable<Result>> tasks = new ArrayList<>();
+        for (final Query query : queries) {
+            tasks.add(new Callable<Result>() {
+                @Override
+                public Result call() {
+                    // each task needs its own search state, only the grid is shared
+                    MultiTargetSearch search = new MultiTargetSearch(
+                            new SearchContext(snapshot.getWidth(), snapshot.getHeight()), snapshot);
+                    return search.findNearest(query.startX, query.startY, query.targets);
+                }
+            });
+        }
+        List<Result> results = new ArrayList<>();
+        try {
+            for (Future<Result> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for queries", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("query failed", e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * a start cell and the targets to choose from
+     */
+    public static class Query {
+        private final int startX;
+        private final int startY;
+        private final List<Coordinate> targets;
+
+        public Query(int startX, int startY, List<Coordinate> targets) {
+            this.startX = startX;
+            this.startY = startY;
+            this.targets = targets;
+        }
+    }
+
+    /**
+     * the target that was nearest and how to get there
+     */
+    public static class Result {
+        private final Coordinate target;
+        private final int cost;
+        private final List<Node> path;
+
+        Result(int x, int y, int cost, List<Node> path) {
+            this.target = new Coordinate(x, y);
+            this.cost = cost;
+            this.path = path;
+        }
+
+        public Coordinate getTarget() {
+            return target;
+        }
+
+        public int getCost() {
+            return cost;
+        }
+
+        public List<Node> getPath() {
+            return path;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package mycontroller.AStarSearch;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import mycontroller.GameMap;
+import tiles.MapTile;
+import tiles.TrapTile;
+
+/**
+ * Bounded LRU cache of A* paths, keyed by start cell, goal cell and the
+ * tiles avoided.
+ *
+ * Every entry remembers the GameMap version it was found at. Once the map
+ * version moves on, the entry is checked against the version of each cell
+ * on its path. It is dropped only if one of those cells has changed since.
+ * Otherwise it is stamped with the new version and kept. A change off the
+ * path could still open a cheaper route, which the cache won't notice.
+ * That is the same trade-off the strategies make by not replanning while
+ * they drive.
+ */
+public class PathCache {
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final LinkedHashMap<Key, CachedPath> entries;
+    private int hits = 0;
+    private int misses = 0;
+    private int evictions = 0;
+    private int invalidations = 0;
+
+    public PathCache(final int capacity) {
+        // access order, so the eldest entry is always the least recently used one
+        this.entries = new LinkedHashMap<Key, CachedPath>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedPath> eldest) {
+                if (size() > capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param startX
+     * @param startY
+     * @param goalX
+     * @param goalY
+     * @param tilesToAvoid
+     * @param gameMap
+     * @return a copy of the cached path, or null if there is no valid entry
+     */
+    public List<Node> get(int startX, int startY, int goalX, int goalY, List<MapTile> tilesToAvoid,
+            GameMap gameMap) {
+        Key key = new Key(startX, startY, goalX, goalY, signature(tilesToAvoid));
+        CachedPath entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.version != gameMap.getVersion()) {
+            if (crossesChangedCell(entry, gameMap)) {
+                entries.remove(key);
+                invalidations++;
+                misses++;
+                return null;
+            }
+            entry.version = gameMap.getVersion();
+        }
+        hits++;
+        // callers are free to change the list they are given
+        return new ArrayList<>(entry.path);
+    }
+
+    /**
+     * remember a path found at the current map version, unreachable targets are not cached
+     * @param startX
+     * @param startY
+     * @param goalX
+     * @param goalY
+     * @param tilesToAvoid
+     * @param gameMap
+     * @param path
+     */
+    public void put(int startX, int startY, int goalX, int goalY, List<MapTile> tilesToAvoid, GameMap gameMap,
+            List<Node> path) {
+        if (path.isEmpty()) {
+            return;
+        }
+        entries.put(new Key(startX, startY, goalX, goalY, signature(tilesToAvoid)),
+                new CachedPath(new ArrayList<>(path), gameMap.getVersion()));
+    }
+
+    private boolean crossesChangedCell(CachedPath entry, GameMap gameMap) {
+        for (Node node : entry.path) {
+            if (gameMap.getCellVersion(node.getX(), node.getY()) > entry.version) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * the same tiles in any order or repeated give the same signature
+     * @param tilesToAvoid
+     * @return
+     */
+    public static String signature(List<MapTile> tilesToAvoid) {
+        TreeSet<String> names = new TreeSet<>();
+        for (MapTile tile : tilesToAvoid) {
+            if (tile.getType() == MapTile.Type.TRAP) {
+                names.add(tile.getType() + ":" + ((TrapTile) tile).getTrap());
+            } else {
+                names.add(tile.getType().toString());
+            }
+        }
+        return names.toString();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return entries dropped to stay within capacity
+     */
+    public int getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return entries dropped because a cell on their path changed
+     */
+    public int getInvalidations() {
+        return invalidations;
+    }
+
+    private static final class Key {
+        private final int startX;
+        private final int startY;
+        private final int goalX;
+        private final int goalY;
+        private final String avoidSignature;
+
+        private Key(int startX, int startY, int goalX, int goalY, String avoidSignature) {
+            this.startX = startX;
+            this.startY = startY;
+            this.goalX = goalX;
+            this.goalY = goalY;
+            this.avoidSignature = avoidSignature;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return startX == other.startX && startY == other.startY && goalX == other.goalX
+                    && goalY == other.goalY && avoidSignature.equals(other.avoidSignature);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = startX;
+            result = 31 * result + startY;
+            result = 31 * result + goalX;
+            result = 31 * result + goalY;
+            return 31 * result + avoidSignature.hashCode();
+        }
+    }
+
+    private static final class CachedPath {
+        private final List<Node> path;
+        private int version;
+
+        private CachedPath(List<Node> path, int version) {
+            this.path = path;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package mycontroller.AStarSearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mycontroller.MapSnapshot;
+import tiles.MapTile;
+
+/**
+ * Runs path searches on a small pool of background threads, so update()
+ * never waits for one.
+ *
+ * A query works on GameMap's published MapSnapshot, since the update
+ * thread keeps changing the map. The worker builds the grid itself, so the
+ * update thread copies nothing. Callers poll the returned PlanHandle on
+ * later ticks. Each new submission cancels the one before it, since the
+ * car only ever follows the latest plan. A cancelled search notices the
+ * interrupt between chunks of expansions and gives up.
+ *
+ * The worker threads are daemons and live as long as the controller, so
+ * there is nothing to shut down.
+ */
+public class PlannerService {
+    public static final int DEFAULT_THREADS = 2;
+    // expansions between checks for cancellation
+    private static final int CHUNK_EXPANSIONS = 4096;
+
+    private final ExecutorService executor;
+    private final ThreadLocal<SearchContext> contexts = new ThreadLocal<>();
+    private PlanHandle latest = null;
+
+    public PlannerService(int threads) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "planner-" + threadCount.incrementAndGet());
+                // never keep the simulation alive on its own
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * queue a search on one of GameMap's snapshots, cancelling the previous query if it is still running
+     * @param snapshot from GameMap.getSnapshot(), turned into a grid on the worker thread
+     * @param tilesToAvoid
+     * @param startX
+     * @param startY
+     * @param goalX
+     * @param goalY
+     * @return handle to poll for the path
+     */
+    public PlanHandle submit(final MapSnapshot snapshot, final ArrayList<MapTile> tilesToAvoid, final int startX,
+            final int startY, final int goalX, final int goalY) {
+        if (latest != null) {
+            latest.cancel();
+        }
+        Future<List<Node>> future = executor.submit(new Callable<List<Node>>() {
+            @Override
+            public List<Node> call() {
+                SearchGrid grid = new SearchGrid(snapshot, tilesToAvoid);
+                ResumableSearch search = new ResumableSearch(getContext(grid), grid);
+                search.start(startX, startY, goalX, goalY);
+                while (!search.resume(CHUNK_EXPANSIONS, Long.MAX_VALUE)) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new CancellationException();
+                    }
+                }
+                return search.getPath();
+            }
+        });
+        latest = new PlanHandle(future);
+        return latest;
+    }
+
+    /**
+     * one context per worker thread, sized for the grid it searches
+     */
+    private SearchContext getContext(SearchGrid grid) {
+        SearchContext context = contexts.get();
+        if (context == null || context.getRows() != grid.getWidth() || context.getCols() != grid.getHeight()) {
+            context = new SearchContext(grid.getWidth(), grid.getHeight());
+            contexts.set(context);
+        }
+        return context;
+    }
+
+    /**
+     * a path that may still be being searched for
+     */
+    public static class PlanHandle {
+        private final Future<List<Node>> future;
+
+        private PlanHandle(Future<List<Node>> future) {
+            this.future = future;
+        }
+
+        public boolean isDone() {
+            return future.isDone();
+        }
+
+        public boolean isCancelled() {
+            return future.isCancelled();
+        }
+
+        public void cancel() {
+            future.cancel(true);
+        }
+
+        /**
+         * never blocks
+         * @return the path once the search has finished, null while it is running or if it was cancelled
+         */
+        public List<Node> getPath() {
+            if (!future.isDone() || future.isCancelled()) {
+                return null;
+            }
+            try {
+                return future.get();
+            } catch (InterruptedException | ExecutionException | CancellationException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package mycontroller.AStarSearch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A* that can be paused and resumed, so a long search is spread over
+ * several update() ticks instead of stalling one frame.
+ *
+ * Each resume() expands nodes until it runs out of its expansion count or
+ * time budget, then returns. All search state stays in its own
+ * SearchContext between calls. While the search is unfinished,
+ * getBestPartialPath() leads to the open node with the lowest f, so the
+ * car can start moving before the full path is known.
+ *
+ * Partial routes aren't prefixes of each other, so a car that followed one
+ * is usually next to the next one rather than on it. getBestPartialPathFrom()
+ * joins the car's cell onto the route with a short search of its own,
+ * leaving the paused search as it was.
+ */
+public class ResumableSearch {
+    // System.nanoTime() is only checked this often
+    private static final int TIME_CHECK_INTERVAL = 64;
+
+    private final SearchContext context;
+    private final SearchGrid grid;
+    private int start = SearchContext.NO_PARENT;
+    private int goal;
+    private boolean complete = true;
+    private boolean found = false;
+    private int expandedNodes;
+    private SearchContext joinContext = null; // built the first time a car has to be joined onto a route
+    private int[] routeMarks; // a cell is on the route being joined if its mark equals joinContext's generation
+    private int[] routeIndices;
+
+    public ResumableSearch(SearchContext context, SearchGrid grid) {
+        this.context = context;
+        this.grid = grid;
+    }
+
+    /**
+     * begin a new query, dropping whatever was left of the previous one
+     * @param startX
+     * @param startY
+     * @param goalX
+     * @param goalY
+     */
+    public void start(int startX, int startY, int goalX, int goalY) {
+        context.beginSearch();
+        start = grid.getCellId(startX, startY);
+        goal = grid.getCellId(goalX, goalY);
+        complete = false;
+        found = false;
+        expandedNodes = 0;
+        touch(start);
+        context.setPathData(start, SearchContext.NO_PARENT, 0);
+        context.getOpenList().insertOrUpdate(start, context.getF(start));
+    }
+
+    /**
+     * expand nodes until the search finishes or either budget runs out
+     * @param maxExpansions
+     * @param nanoBudget
+     * @return true once the search is complete
+     */
+    public boolean resume(int maxExpansions, long nanoBudget) {
+        if (complete) {
+            return true;
+        }
+        // elapsed time against the budget, so a budget as large as Long.MAX_VALUE can't overflow a deadline
+        long started = System.nanoTime();
+        IndexedMinHeap openList = context.getOpenList();
+        for (int expansions = 0; expansions < maxExpansions; expansions++) {
+            if (openList.isEmpty()) {
+                complete = true;
+                return true;
+            }
+            if (expansions % TIME_CHECK_INTERVAL == TIME_CHECK_INTERVAL - 1 && System.nanoTime() - started >= nanoBudget) {
+                return false;
+            }
+            if (openList.peek() == goal) {
+                complete = true;
+                found = true;
+                return true;
+            }
+            int current = openList.poll();
+            context.close(current);
+            expandedNodes++;
+            expand(current);
+        }
+        return false;
+    }
+
+    private void expand(int current) {
+        int x = grid.getX(current);
+        int y = grid.getY(current);
+        int gCost = context.getG(current) + grid.getStepCost(current);
+        relax(current, x - 1, y, gCost);
+        relax(current, x + 1, y, gCost);
+        relax(current, x, y - 1, gCost);
+        relax(current, x, y + 1, gCost);
+    }
+
+    private void relax(int current, int x, int y, int gCost) {
+        if (!grid.isInside(x, y)) {
+            return;
+        }
+        int next = grid.getCellId(x, y);
+        if (!grid.isPassable(next) || context.isClosed(next)) {
+            return;
+        }
+        if (!context.isTouched(next)) {
+            touch(next);
+        }
+        if (gCost < context.getG(next)) {
+            context.setPathData(next, current, gCost);
+            context.getOpenList().insertOrUpdate(next, context.getF(next));
+        }
+    }
+
+    private void touch(int id) {
+        context.touch(id, manhattan(id, goal) * AStarSearch.DEFAULT_ROAD_COST);
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return the full path once complete, empty if unfinished or the goal can't be reached
+     */
+    public List<Node> getPath() {
+        if (!found) {
+            return new ArrayList<>();
+        }
+        return getPath(goal);
+    }
+
+    /**
+     * @return path to the open node with the lowest f, or the full path once complete
+     */
+    public List<Node> getBestPartialPath() {
+        if (complete) {
+            return getPath();
+        }
+        IndexedMinHeap openList = context.getOpenList();
+        return getPath(openList.isEmpty() ? start : openList.peek());
+    }
+
+    /**
+     * the best route so far, from a cell the car may have reached by following an earlier one
+     * @param x
+     * @param y
+     * @return route from the cell, empty if there is none yet or the cell can't reach it
+     */
+    public List<Node> getBestPartialPathFrom(int x, int y) {
+        List<Node> route = getBestPartialPath();
+        for (int i = 0; i < route.size(); i++) {
+            if (route.get(i).getX() == x && route.get(i).getY() == y) {
+                return toPath(new int[0], route, i);
+            }
+        }
+        if (route.isEmpty()) {
+            return route;
+        }
+        return joinRoute(grid.getCellId(x, y), route);
+    }
+
+    /**
+     * A* from the cell until it reaches any cell of the route, towards the route's end
+     * @return the way onto the route followed by the rest of it, empty if the route can't be reached
+     */
+    private List<Node> joinRoute(int from, List<Node> route) {
+        if (joinContext == null) {
+            joinContext = new SearchContext(grid.getWidth(), grid.getHeight());
+            routeMarks = new int[grid.getCellCount()];
+            routeIndices = new int[grid.getCellCount()];
+        }
+        joinContext.beginSearch();
+        int generation = joinContext.getGeneration();
+        for (int i = 0; i < route.size(); i++) {
+            int cell = grid.getCellId(route.get(i).getX(), route.get(i).getY());
+            routeMarks[cell] = generation;
+            routeIndices[cell] = i;
+        }
+        Node end = route.get(route.size() - 1);
+        int endCell = grid.getCellId(end.getX(), end.getY());
+        IndexedMinHeap openList = joinContext.getOpenList();
+        joinContext.touch(from, manhattan(from, endCell) * AStarSearch.DEFAULT_ROAD_COST);
+        joinContext.setPathData(from, SearchContext.NO_PARENT, 0);
+        openList.insertOrUpdate(from, joinContext.getF(from));
+        while (!openList.isEmpty()) {
+            int current = openList.poll();
+            joinContext.close(current);
+            if (routeMarks[current] == generation) {
+                // the cells before the one on the route, which toPath() takes from the route itself
+                int length = 0;
+                for (int id = joinContext.getParent(current); id != SearchContext.NO_PARENT;
+                        id = joinContext.getParent(id)) {
+                    length++;
+                }
+                int[] way = new int[length];
+                for (int id = joinContext.getParent(current); id != SearchContext.NO_PARENT;
+                        id = joinContext.getParent(id)) {
+                    way[--length] = id;
+                }
+                return toPath(way, route, routeIndices[current]);
+            }
+            int x = grid.getX(current);
+            int y = grid.getY(current);
+            int gCost = joinContext.getG(current) + grid.getStepCost(current);
+            relaxJoin(current, x - 1, y, gCost, endCell);
+            relaxJoin(current, x + 1, y, gCost, endCell);
+            relaxJoin(current, x, y - 1, gCost, endCell);
+            relaxJoin(current, x, y + 1, gCost, endCell);
+        }
+        return new ArrayList<>();
+    }
+
+    private void relaxJoin(int current, int x, int y, int gCost, int endCell) {
+        if (!grid.isInside(x, y)) {
+            return;
+        }
+        int next = grid.getCellId(x, y);
+        if (!grid.isPassable(next) || joinContext.isClosed(next)) {
+            return;
+        }
+        if (!joinContext.isTouched(next)) {
+            joinContext.touch(next, manhattan(next, endCell) * AStarSearch.DEFAULT_ROAD_COST);
+        }
+        if (gCost < joinContext.getG(next)) {
+            joinContext.setPathData(next, current, gCost);
+            joinContext.getOpenList().insertOrUpdate(next, joinContext.getF(next));
+        }
+    }
+
+    private int manhattan(int a, int b) {
+        return Math.abs(grid.getX(a) - grid.getX(b)) + Math.abs(grid.getY(a) - grid.getY(b));
+    }
+
+    /**
+     * @param way cells leading onto the route
+     * @param route
+     * @param joinIndex index in the route where way joins it
+     * @return way followed by the route from joinIndex on, with g counted from the first cell
+     */
+    private List<Node> toPath(int[] way, List<Node> route, int joinIndex) {
+        List<Node> path = new ArrayList<>();
+        Node parent = null;
+        int g = 0;
+        for (int i = 0; i < way.length + route.size() - joinIndex; i++) {
+            Node step = i < way.length ? null : route.get(joinIndex + i - way.length);
+            int id = step == null ? way[i] : grid.getCellId(step.getX(), step.getY());
+            if (parent != null) {
+                g += grid.getStepCost(grid.getCellId(parent.getX(), parent.getY()));
+            }
+            Node node = new Node(grid.getX(id), grid.getY(id), grid.getTile(id));
+            node.setG(g);
+            node.setParent(parent);
+            path.add(node);
+            parent = node;
+        }
+        return path;
+    }
+
+    /**
+     * true if a tile change leaves the paused search's g values or open list wrong
+     * a cell that is only open matters once it can't be entered, its own cost is only paid on the way out
+     * @param id cell whose tile changed, already updated in the grid
+     * @return false once the search is complete, the path itself has to be checked instead
+     */
+    public boolean isAffectedBy(int id) {
+        return !complete && context.isTouched(id) && (context.isClosed(id) || !grid.isPassable(id));
+    }
+
+    private List<Node> getPath(int last) {
+        List<Node> path = new ArrayList<>();
+        for (int id = last; id != SearchContext.NO_PARENT; id = context.getParent(id)) {
+            Node node = new Node(grid.getX(id), grid.getY(id), grid.getTile(id));
+            node.setG(context.getG(id));
+            path.add(node);
+        }
+        Collections.reverse(path);
+        for (int i = 1; i < path.size(); i++) {
+            path.get(i).setParent(path.get(i - 1));
+        }
+        return path;
+    }
+
+    /**
+     * nodes expanded so far for the current query, over all resume() calls
+     * @return expanded node count
+     */
+    public int getExpandedNodes() {
+        return expandedNodes;
+    }
+}
@@ -0,0 +1,218 @@
+package mycontroller.AStarSearch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import mycontroller.HashMapTile;
+import tiles.LavaTrap;
+import tiles.MapTile;
+import utilities.Coordinate;
+
+/**
+ * Stand-alone benchmark for the path finders on generated maps.
+ *
+ * Run with: java mycontroller.AStarSearch.SearchBenchmark [size ...]
+ * Every size runs on two square, seeded maps so the numbers are repeatable
+ * between runs: one with scattered walls and lava pools, and one narrow maze
+ * from ExplorationBenchmark. The "legacy" row is the PriorityQueue/ArrayList
+ * search AStarSearch replaced, as a baseline for the "astar" row.
+ */
+public class SearchBenchmark {
+    private static final int[] DEFAULT_SIZES = {100, 200, 400};
+    private static final int QUERIES_PER_MAP = 10;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final double WALL_DENSITY = 0.22;
+    private static final double LAVA_DENSITY = 0.04;
+    private static final double BENCHMARK_WEIGHT = 2.0;
+    private static final double BENCHMARK_EPSILON = 0.2;
+    // the legacy search takes seconds per query beyond this, so larger maps skip its row
+    private static final int LEGACY_MAX_SIZE = 200;
+
+    public static void main(String[] args) {
+        int[] sizes = DEFAULT_SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        ArrayList<MapTile> tilesToAvoid = new ArrayList<>();
+        tilesToAvoid.add(new MapTile(MapTile.Type.WALL));
+
+        System.out.println(String.format("%-8s %-6s %-10s %12s %12s %10s", "size", "map", "engine", "ms/query",
+                "expanded", "cost"));
+        for (int size : sizes) {
+            run(size, "walls", generateMap(size, size, size), tilesToAvoid);
+            run(size, "maze", ExplorationBenchmark.generateMaze(size, size, size), tilesToAvoid);
+        }
+    }
+
+    private static void run(int size, String mapName, HashMap<Coordinate, HashMapTile> map,
+                            ArrayList<MapTile> tilesToAvoid) {
+        int[][] queries = generateQueries(map, size, size, size);
+
+        SearchContext context = new SearchContext(size, size);
+        SearchGrid grid = new SearchGrid(map, tilesToAvoid, size, size);
+        JumpPointSearch jumpPointSearch = new JumpPointSearch(context, grid);
+        BidirectionalSearch bidirectionalSearch = new BidirectionalSearch(context,
+                new SearchContext(size, size), grid);
+        LandmarkHeuristic landmarks = new LandmarkHeuristic(grid);
+        landmarks.rebuild();
+
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            runAStar(map, context, queries, tilesToAvoid, null, 1.0, 0.0);
+            runAStar(map, context, queries, tilesToAvoid, landmarks, 1.0, 0.0);
+            runAStar(map, context, queries, tilesToAvoid, landmarks, BENCHMARK_WEIGHT, 0.0);
+            runAStar(map, context, queries, tilesToAvoid, landmarks, 1.0, BENCHMARK_EPSILON);
+            runJumpPoint(jumpPointSearch, queries);
+            runBidirectional(bidirectionalSearch, queries);
+        }
+        if (size <= LEGACY_MAX_SIZE) {
+            printRow(size, mapName, "legacy", runLegacy(map, size, queries, tilesToAvoid));
+        }
+        printRow(size, mapName, "astar", runAStar(map, context, queries, tilesToAvoid, null, 1.0, 0.0));
+        printRow(size, mapName, "alt", runAStar(map, context, queries, tilesToAvoid, landmarks, 1.0, 0.0));
+        printRow(size, mapName, "alt-w" + BENCHMARK_WEIGHT,
+                runAStar(map, context, queries, tilesToAvoid, landmarks, BENCHMARK_WEIGHT, 0.0));
+        printRow(size, mapName, "alt-e" + BENCHMARK_EPSILON,
+                runAStar(map, context, queries, tilesToAvoid, landmarks, 1.0, BENCHMARK_EPSILON));
+        printRow(size, mapName, "jps", runJumpPoint(jumpPointSearch, queries));
+        printRow(size, mapName, "bidir", runBidirectional(bidirectionalSearch, queries));
+    }
+
+    /**
+     * run every query through AStarSearch
+     * @param landmarks null for the plain Manhattan heuristic
+     * @param weight see AStarSearch.setWeight()
+     * @param epsilon see AStarSearch.setFocalEpsilon()
+     * @return {total nanoseconds, total expanded nodes, total path cost}
+     */
+    private static long[] runAStar(HashMap<Coordinate, HashMapTile> map, SearchContext context, int[][] queries,
+                                   ArrayList<MapTile> tilesToAvoid, LandmarkHeuristic landmarks,
+                                   double weight, double epsilon) {
+        long[] result = new long[3];
+        for (int[] query : queries) {
+            Node start = new Node(query[0], query[1], map.get(new Coordinate(query[0], query[1])).getTile());
+            Node goal = new Node(query[2], query[3], map.get(new Coordinate(query[2], query[3])).getTile());
+            long begin = System.nanoTime();
+            AStarSearch aStar = new AStarSearch(context, start, goal, map, tilesToAvoid);
+            aStar.setLandmarkHeuristic(landmarks);
+            aStar.setWeight(weight);
+            aStar.setFocalEpsilon(epsilon);
+            List<Node> path = aStar.findPath();
+            result[0] += System.nanoTime() - begin;
+            result[1] += aStar.getExpandedNodes();
+            result[2] += path.isEmpty() ? 0 : path.get(path.size() - 1).getG();
+        }
+        return result;
+    }
+
+    /**
+     * run every query through LegacyAStarSearch, without warm-up rounds since its
+     * time goes on scanning the open and closed lists rather than on compiling
+     * @return {total nanoseconds, total expanded nodes, total path cost}
+     */
+    private static long[] runLegacy(HashMap<Coordinate, HashMapTile> map, int size, int[][] queries,
+                                    ArrayList<MapTile> tilesToAvoid) {
+        long[] result = new long[3];
+        for (int[] query : queries) {
+            Node start = new Node(query[0], query[1], map.get(new Coordinate(query[0], query[1])).getTile());
+            Node goal = new Node(query[2], query[3], map.get(new Coordinate(query[2], query[3])).getTile());
+            long begin = System.nanoTime();
+            LegacyAStarSearch aStar = new LegacyAStarSearch(size, size, start, goal, map, tilesToAvoid);
+            List<Node> path = aStar.findPath();
+            result[0] += System.nanoTime() - begin;
+            result[1] += aStar.getExpandedNodes();
+            result[2] += path.isEmpty() ? 0 : path.get(path.size() - 1).getG();
+        }
+        return result;
+    }
+
+    private static long[] runJumpPoint(JumpPointSearch jumpPointSearch, int[][] queries) {
+        long[] result = new long[3];
+        for (int[] query : queries) {
+            long begin = System.nanoTime();
+            List<Node> path = jumpPointSearch.findPath(query[0], query[1], query[2], query[3]);
+            result[0] += System.nanoTime() - begin;
+            result[1] += jumpPointSearch.getExpandedNodes();
+            result[2] += path.isEmpty() ? 0 : path.get(path.size() - 1).getG();
+        }
+        return result;
+    }
+
+    private static long[] runBidirectional(BidirectionalSearch bidirectionalSearch, int[][] queries) {
+        long[] result = new long[3];
+        for (int[] query : queries) {
+            long begin = System.nanoTime();
+            List<Node> path = bidirectionalSearch.findPath(query[0], query[1], query[2], query[3]);
+            result[0] += System.nanoTime() - begin;
+            result[1] += bidirectionalSearch.getExpandedNodes();
+            result[2] += path.isEmpty() ? 0 : path.get(path.size() - 1).getG();
+        }
+        return result;
+    }
+
+    private static void printRow(int size, String mapName, String engine, long[] result) {
+        System.out.println(String.format("%-8s %-6s %-10s %12.3f %12d %10d", size + "x" + size, mapName, engine,
+                result[0] / 1e6 / QUERIES_PER_MAP, result[1] / QUERIES_PER_MAP, result[2] / QUERIES_PER_MAP));
+    }
+
+    /**
+     * build a walled map with random obstacles and lava pools
+     * @param width
+     * @param height
+     * @param seed
+     * @return map in the same shape GameMap.getUpdatedMap() returns
+     */
+    public static HashMap<Coordinate, HashMapTile> generateMap(int width, int height, long seed) {
+        Random random = new Random(seed);
+        HashMap<Coordinate, HashMapTile> map = new HashMap<>();
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                MapTile tile;
+                boolean border = x == 0 || y == 0 || x == width - 1 || y == height - 1;
+                double roll = random.nextDouble();
+                if (border || roll < WALL_DENSITY) {
+                    tile = new MapTile(MapTile.Type.WALL);
+                } else if (roll < WALL_DENSITY + LAVA_DENSITY) {
+                    tile = new LavaTrap();
+                } else {
+                    tile = new MapTile(MapTile.Type.ROAD);
+                }
+                HashMapTile hashMapTile = new HashMapTile(tile);
+                hashMapTile.setExplored(1);
+                map.put(new Coordinate(x, y), hashMapTile);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * pick start/goal pairs on road tiles far apart from each other
+     * @return {startX, startY, goalX, goalY} per query
+     */
+    public static int[][] generateQueries(HashMap<Coordinate, HashMapTile> map, int width, int height, long seed) {
+        Random random = new Random(seed * 31 + 7);
+        int[][] queries = new int[QUERIES_PER_MAP][];
+        for (int i = 0; i < QUERIES_PER_MAP; i++) {
+            int[] start = randomRoad(map, random, 1, 1, width / 4, height / 4);
+            int[] goal = randomRoad(map, random, width * 3 / 4, height * 3 / 4, width - 1, height - 1);
+            queries[i] = new int[]{start[0], start[1], goal[0], goal[1]};
+        }
+        return queries;
+    }
+
+    private static int[] randomRoad(HashMap<Coordinate, HashMapTile> map, Random random, int minX, int minY,
+                                    int maxX, int maxY) {
+        while (true) {
+            int x = minX + random.nextInt(maxX - minX);
+            int y = minY + random.nextInt(maxY - minY);
+            if (map.get(new Coordinate(x, y)).isType(MapTile.Type.ROAD)) {
+                return new int[]{x, y};
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package mycontroller.AStarSearch;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import mycontroller.HashMapTile;
+import utilities.Coordinate;
+
+/**
+ * Reusable storage for A* searches over one map.
+ *
+ * g, f, heuristic and parent live in flat int arrays indexed by cell id
+ * (x * height + y). A cell's values only count if its stamp matches the
+ * current generation, so starting a new search is a counter increment
+ * rather than a pass over every cell. One context is owned per controller
+ * and shared by every strategy that searches, so replanning allocates
+ * nothing proportional to the map size.
+ */
+public class SearchContext {
+    public static final int NO_PARENT = -1;
+
+    private final int rows;
+    private final int cols;
+    private final int[] g;
+    private final int[] f;
+    private final int[] h;
+    private final int[] parent;
+    private final int[] touchedStamp;
+    private final int[] closedStamp;
+    private final IndexedMinHeap openList;
+    // only needed by focal searches, so created on first use
+    private IndexedMinHeap focalList = null;
+    private IndexedMinHeap waitingList = null;
+    private int generation = 0;
+
+    // Coordinate has public fields, so one instance is reused for every map lookup
+    private final Coordinate probe = new Coordinate(0, 0);
+
+    public SearchContext(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        int cells = rows * cols;
+        this.g = new int[cells];
+        this.f = new int[cells];
+        this.h = new int[cells];
+        this.parent = new int[cells];
+        this.touchedStamp = new int[cells];
+        this.closedStamp = new int[cells];
+        this.openList = new IndexedMinHeap(cells);
+    }
+
+    /**
+     * invalidate every value from the previous search in O(1)
+     */
+    public void beginSearch() {
+        openList.clear();
+        if (focalList != null) {
+            focalList.clear();
+            waitingList.clear();
+        }
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            // stamps would become ambiguous after wrapping, so pay for one full reset
+            Arrays.fill(touchedStamp, 0);
+            Arrays.fill(closedStamp, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * true if the cell has been given a g value in the current search
+     * @param id
+     * @return
+     */
+    public boolean isTouched(int id) {
+        return touchedStamp[id] == generation;
+    }
+
+    /**
+     * first visit of a cell in this search: record its heuristic
+     * @param id
+     * @param heuristic
+     */
+    public void touch(int id, int heuristic) {
+        touchedStamp[id] = generation;
+        h[id] = heuristic;
+        g[id] = Integer.MAX_VALUE;
+        f[id] = Integer.MAX_VALUE;
+        parent[id] = NO_PARENT;
+    }
+
+    public void setPathData(int id, int parentId, int gCost) {
+        parent[id] = parentId;
+        g[id] = gCost;
+        f[id] = gCost + h[id];
+    }
+
+    public boolean isClosed(int id) {
+        return closedStamp[id] == generation;
+    }
+
+    public void close(int id) {
+        closedStamp[id] = generation;
+    }
+
+    /**
+     * put a closed cell back in play after a cheaper path to it turned up
+     * @param id
+     */
+    public void reopen(int id) {
+        closedStamp[id] = 0;
+    }
+
+    /**
+     * look up a cell without allocating a new Coordinate
+     * @param map
+     * @param x
+     * @param y
+     * @return tile stored at (x, y)
+     */
+    public HashMapTile lookup(Map<Coordinate, HashMapTile> map, int x, int y) {
+        probe.x = x;
+        probe.y = y;
+        return map.get(probe);
+    }
+
+    public int getCellId(int x, int y) {
+        return x * cols + y;
+    }
+
+    public int getX(int id) {
+        return id / cols;
+    }
+
+    public int getY(int id) {
+        return id % cols;
+    }
+
+    public int getG(int id) {
+        return g[id];
+    }
+
+    public int getF(int id) {
+        return f[id];
+    }
+
+    public int getH(int id) {
+        return h[id];
+    }
+
+    public int getParent(int id) {
+        return parent[id];
+    }
+
+    public IndexedMinHeap getOpenList() {
+        return openList;
+    }
+
+    /**
+     * open nodes whose f is within the focal bound, keyed by their heuristic
+     * @return
+     */
+    public IndexedMinHeap getFocalList() {
+        if (focalList == null) {
+            focalList = new IndexedMinHeap(rows * cols);
+            waitingList = new IndexedMinHeap(rows * cols);
+        }
+        return focalList;
+    }
+
+    /**
+     * open nodes not yet in the focal list, keyed by f
+     * @return
+     */
+    public IndexedMinHeap getWaitingList() {
+        getFocalList();
+        return waitingList;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+}
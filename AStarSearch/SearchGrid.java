@@ -0,0 +1,207 @@
+package mycontroller.AStarSearch;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+import mycontroller.HashMapTile;
+import mycontroller.MapChangeListener;
+import mycontroller.MapSnapshot;
+import mycontroller.TilesChecker;
+import tiles.MapTile;
+import utilities.Coordinate;
+
+/**
+ * Flat cost model of the map shared by the planners.
+ *
+ * Uses the same rules as AStarSearch: a cell listed in tilesToAvoid can't
+ * be entered, and leaving a lava cell costs DEFAULT_LAVA_COST instead of
+ * DEFAULT_ROAD_COST. Cells are indexed x * height + y, like SearchContext.
+ * Engines that only read the grid can register it with GameMap directly to
+ * keep it current.
+ */
+public class SearchGrid implements MapChangeListener {
+    private final int width;
+    private final int height;
+    private final int[] stepCost;
+    private final boolean[] passable;
+    private final boolean[] healing;
+    private final MapTile[] tiles;
+    private final ArrayList<MapTile> tilesToAvoid;
+    private final Map<Coordinate, HashMapTile> map;
+    private final Coordinate probe = new Coordinate(0, 0);
+
+    public SearchGrid(Map<Coordinate, HashMapTile> map, ArrayList<MapTile> tilesToAvoid, int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.tilesToAvoid = tilesToAvoid;
+        this.map = map;
+        this.stepCost = new int[width * height];
+        this.passable = new boolean[width * height];
+        this.healing = new boolean[width * height];
+        this.tiles = new MapTile[width * height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                MapTile tile = getTile(getCellId(x, y));
+                if (tile != null) {
+                    setTile(getCellId(x, y), tile);
+                }
+            }
+        }
+    }
+
+    /**
+     * frozen grid of one of GameMap's published snapshots, safe to build and search on another thread
+     * @param snapshot
+     * @param tilesToAvoid
+     */
+    public SearchGrid(MapSnapshot snapshot, ArrayList<MapTile> tilesToAvoid) {
+        this.width = snapshot.getWidth();
+        this.height = snapshot.getHeight();
+        this.tilesToAvoid = tilesToAvoid;
+        this.map = null;
+        this.stepCost = new int[width * height];
+        this.passable = new boolean[width * height];
+        this.healing = new boolean[width * height];
+        this.tiles = new MapTile[width * height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                MapTile tile = snapshot.getTile(x, y);
+                if (tile != null) {
+                    setTile(getCellId(x, y), tile);
+                }
+            }
+        }
+    }
+
+    /**
+     * copy of the grid as it is now, see snapshot()
+     */
+    private SearchGrid(SearchGrid grid) {
+        this.width = grid.width;
+        this.height = grid.height;
+        this.tilesToAvoid = grid.tilesToAvoid;
+        this.map = null;
+        this.stepCost = grid.stepCost.clone();
+        this.passable = grid.passable.clone();
+        this.healing = grid.healing.clone();
+        this.tiles = grid.tiles.clone();
+    }
+
+    /**
+     * a frozen copy that no longer follows the map, safe to search on another thread
+     * while this grid keeps being updated
+     * @return
+     */
+    public SearchGrid snapshot() {
+        return new SearchGrid(this);
+    }
+
+    /**
+     * @param id
+     * @return the tile currently stored in the map for the cell, or the tile it had when a snapshot was taken
+     */
+    public MapTile getTile(int id) {
+        if (map == null) {
+            return tiles[id];
+        }
+        probe.x = getX(id);
+        probe.y = getY(id);
+        HashMapTile hashMapTile = map.get(probe);
+        return hashMapTile == null ? null : hashMapTile.getTile();
+    }
+
+    /**
+     * re-classify a cell after its tile changed
+     * @param x
+     * @param y
+     * @param tile
+     * @return true if the cost or passability of the cell changed
+     */
+    public boolean updateCell(int x, int y, MapTile tile) {
+        int id = getCellId(x, y);
+        int oldCost = stepCost[id];
+        boolean wasPassable = passable[id];
+        setTile(id, tile);
+        return oldCost != stepCost[id] || wasPassable != passable[id];
+    }
+
+    @Override
+    public void tileChanged(int x, int y, MapTile tile) {
+        if (isInside(x, y)) {
+            updateCell(x, y, tile);
+        }
+    }
+
+    private void setTile(int id, MapTile tile) {
+        stepCost[id] = TilesChecker.checkForLavaTrap(tile) ? AStarSearch.DEFAULT_LAVA_COST
+                : AStarSearch.DEFAULT_ROAD_COST;
+        passable[id] = !isTileToAvoid(tile);
+        healing[id] = TilesChecker.checkForHealthTile(tile);
+        tiles[id] = tile;
+    }
+
+    private boolean isTileToAvoid(MapTile tile) {
+        for (MapTile tileToAvoid : tilesToAvoid) {
+            if (TilesChecker.checkForTileToAvoid(tileToAvoid, tile)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param id
+     * @return true if a path may enter the cell
+     */
+    public boolean isPassable(int id) {
+        return passable[id];
+    }
+
+    /**
+     * @param id
+     * @return cost of moving out of the cell to any neighbour
+     */
+    public int getStepCost(int id) {
+        return stepCost[id];
+    }
+
+    public boolean isLava(int id) {
+        return stepCost[id] == AStarSearch.DEFAULT_LAVA_COST;
+    }
+
+    public boolean isHealing(int id) {
+        return healing[id];
+    }
+
+    public boolean isInside(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    public int getCellId(int x, int y) {
+        return x * height + y;
+    }
+
+    public int getX(int id) {
+        return id / height;
+    }
+
+    public int getY(int id) {
+        return id % height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getCellCount() {
+        return width * height;
+    }
+
+    public ArrayList<MapTile> getTilesToAvoid() {
+        return tilesToAvoid;
+    }
+}
@@ -0,0 +1,238 @@
+package mycontroller.AStarSearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import world.WorldSpatial;
+
+/**
+ * Plans over (x, y, heading) so that turns are paid for where the car has
+ * to make them.
+ *
+ * AStarSearch only counts cells. A route that is shortest in cells can
+ * still be slow to drive if it zigzags, since the car slows to turning
+ * speed for every 90 degree turn. Here a state is a cell plus the car's
+ * heading. Driving on costs the cell's step cost. Leaving a cell in a new
+ * heading adds turnCost, or uTurnCost for turning back. The search starts
+ * from the car's current orientation, stops on the goal cell in any
+ * heading, and returns a MotionPlan directly.
+ *
+ * The heuristic is the scaled Manhattan distance plus the fewest turns the
+ * goal still needs from the current heading. It stays consistent as long
+ * as a u-turn costs at least two turns.
+ */
+public class TurnAwarePlanner {
+    public static final int DEFAULT_TURN_COST = 2 * AStarSearch.DEFAULT_ROAD_COST;
+    public static final int DEFAULT_U_TURN_COST = 5 * AStarSearch.DEFAULT_ROAD_COST;
+    private static final WorldSpatial.Direction[] HEADINGS = WorldSpatial.Direction.values();
+    private static final int NONE = -1;
+
+    private final SearchGrid grid;
+    private final int turnCost;
+    private final int uTurnCost;
+
+    // state id = cell * HEADINGS.length + heading ordinal
+    private final int[] g;
+    private final int[] parent;
+    private final int[] touchedStamp;
+    private final int[] closedStamp;
+    private final IndexedMinHeap openList;
+    private int generation = 0;
+
+    private int goal;
+    private int cost;
+    private int expandedNodes;
+    private List<Node> path = new ArrayList<>();
+
+    public TurnAwarePlanner(SearchGrid grid) {
+        this(grid, DEFAULT_TURN_COST, DEFAULT_U_TURN_COST);
+    }
+
+    /**
+     * @param grid
+     * @param turnCost added for leaving a cell at 90 degrees to the heading
+     * @param uTurnCost added for leaving a cell the way the car came, at least twice turnCost
+     */
+    public TurnAwarePlanner(SearchGrid grid, int turnCost, int uTurnCost) {
+        if (uTurnCost < 2 * turnCost) {
+            throw new IllegalArgumentException("a u-turn must cost at least two turns: " + uTurnCost);
+        }
+        this.grid = grid;
+        this.turnCost = turnCost;
+        this.uTurnCost = uTurnCost;
+        int states = grid.getCellCount() * HEADINGS.length;
+        this.g = new int[states];
+        this.parent = new int[states];
+        this.touchedStamp = new int[states];
+        this.closedStamp = new int[states];
+        this.openList = new IndexedMinHeap(states);
+    }
+
+    /**
+     * @param startX
+     * @param startY
+     * @param orientation heading the car starts in
+     * @param goalX
+     * @param goalY
+     * @return plan for the cheapest route counting turns, finished straight away if the goal can't be reached
+     */
+    public MotionPlan plan(int startX, int startY, WorldSpatial.Direction orientation, int goalX, int goalY) {
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(touchedStamp, 0);
+            Arrays.fill(closedStamp, 0);
+            generation = 1;
+        }
+        openList.clear();
+        expandedNodes = 0;
+        cost = 0;
+        path = new ArrayList<>();
+        goal = grid.getCellId(goalX, goalY);
+
+        int start = grid.getCellId(startX, startY) * HEADINGS.length + orientation.ordinal();
+        touchedStamp[start] = generation;
+        g[start] = 0;
+        parent[start] = NONE;
+        openList.insertOrUpdate(start, heuristic(start));
+
+        while (!openList.isEmpty()) {
+            int state = openList.poll();
+            closedStamp[state] = generation;
+            expandedNodes++;
+            if (state / HEADINGS.length == goal) {
+                cost = g[state];
+                return buildPlan(state);
+            }
+            expand(state);
+        }
+        return MotionPlan.compile(null);
+    }
+
+    private void expand(int state) {
+        int cell = state / HEADINGS.length;
+        WorldSpatial.Direction heading = HEADINGS[state % HEADINGS.length];
+        int x = grid.getX(cell);
+        int y = grid.getY(cell);
+        int leave = g[state] + grid.getStepCost(cell);
+        for (WorldSpatial.Direction next : HEADINGS) {
+            int nextX = x + MotionPlan.getDeltaX(next);
+            int nextY = y + MotionPlan.getDeltaY(next);
+            if (!grid.isInside(nextX, nextY)) {
+                continue;
+            }
+            int nextCell = grid.getCellId(nextX, nextY);
+            if (!grid.isPassable(nextCell)) {
+                continue;
+            }
+            int nextState = nextCell * HEADINGS.length + next.ordinal();
+            if (closedStamp[nextState] == generation) {
+                continue;
+            }
+            int nextG = leave + getTurnCost(heading, next);
+            if (touchedStamp[nextState] != generation || nextG < g[nextState]) {
+                touchedStamp[nextState] = generation;
+                g[nextState] = nextG;
+                parent[nextState] = state;
+                openList.insertOrUpdate(nextState, nextG + heuristic(nextState));
+            }
+        }
+    }
+
+    private int getTurnCost(WorldSpatial.Direction from, WorldSpatial.Direction to) {
+        if (from == to) {
+            return 0;
+        }
+        return to == MotionPlan.getRightOf(MotionPlan.getRightOf(from)) ? uTurnCost : turnCost;
+    }
+
+    /**
+     * scaled Manhattan distance plus the fewest turns still needed to line up with the goal
+     */
+    private int heuristic(int state) {
+        int cell = state / HEADINGS.length;
+        WorldSpatial.Direction heading = HEADINGS[state % HEADINGS.length];
+        int dx = grid.getX(goal) - grid.getX(cell);
+        int dy = grid.getY(goal) - grid.getY(cell);
+        int distance = (Math.abs(dx) + Math.abs(dy)) * AStarSearch.DEFAULT_ROAD_COST;
+        if (dx == 0 && dy == 0) {
+            return 0;
+        }
+        // a heading is useful if it closes the gap on an axis that still has one
+        boolean alongX = dx != 0 && MotionPlan.getDeltaX(heading) == Integer.signum(dx);
+        boolean alongY = dy != 0 && MotionPlan.getDeltaY(heading) == Integer.signum(dy);
+        int turns;
+        if (dx != 0 && dy != 0) {
+            turns = alongX || alongY ? 1 : 2;
+        } else if (alongX || alongY) {
+            turns = 0;
+        } else {
+            boolean backwards = MotionPlan.getDeltaX(heading) == -Integer.signum(dx)
+                    && MotionPlan.getDeltaY(heading) == -Integer.signum(dy);
+            turns = backwards ? 2 : 1;
+        }
+        return distance + turns * turnCost;
+    }
+
+    /**
+     * collect the runs straight from the parent chain, the path of nodes is kept for getPath()
+     */
+    private MotionPlan buildPlan(int last) {
+        List<Integer> states = new ArrayList<>();
+        for (int state = last; state != NONE; state = parent[state]) {
+            states.add(state);
+        }
+        Collections.reverse(states);
+        int[] segments = new int[2 * states.size()];
+        int count = 0;
+        for (int i = 0; i < states.size(); i++) {
+            int state = states.get(i);
+            int cell = state / HEADINGS.length;
+            Node node = new Node(grid.getX(cell), grid.getY(cell), grid.getTile(cell));
+            node.setG(g[state]);
+            if (!path.isEmpty()) {
+                node.setParent(path.get(path.size() - 1));
+            }
+            path.add(node);
+            if (i == 0) {
+                continue;
+            }
+            int heading = state % HEADINGS.length;
+            if (count > 0 && segments[2 * count - 2] == heading) {
+                segments[2 * count - 1]++;
+            } else {
+                segments[2 * count] = heading;
+                segments[2 * count + 1] = 1;
+                count++;
+            }
+        }
+        int start = states.get(0) / HEADINGS.length;
+        return new MotionPlan(grid.getX(start), grid.getY(start), segments, count);
+    }
+
+    /**
+     * @return cells of the last plan, empty if the goal couldn't be reached
+     */
+    public List<Node> getPath() {
+        return path;
+    }
+
+    /**
+     * @return step and turn costs of the last plan
+     */
+    public int getCost() {
+        return cost;
+    }
+
+    /**
+     * states taken off the open list by the last plan()
+     * @return expanded node count
+     */
+    public int getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    public SearchGrid getGrid() {
+        return grid;
+    }
+}
@@ -0,0 +1,137 @@
+package mycontroller;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Cells of interest, e.g. health traps, bucketed into square blocks of the
+ * map so that the ones nearest a position can be found without looking at
+ * all of them.
+ *
+ * A k-nearest query reads the query's own bucket first, then rings of
+ * buckets further out. It stops once the nearest a ring could possibly be
+ * is further than the k-th best cell found so far. Distances are Manhattan
+ * distances in cells, and cells are ids x * height + y as in GridMap.
+ */
+public class BucketGridIndex {
+	private final int height;
+	private final int bucketSize;
+	private final int bucketsX;
+	private final int bucketsY;
+	private final int[][] bucketCells;
+	private final int[] bucketSizes;
+	private final BitSet members;
+	private int size = 0;
+
+	// best cells of the current query, kept sorted by distance
+	private int[] bestDistances = new int[0];
+
+	public BucketGridIndex(int width, int height, int bucketSize) {
+		this.height = height;
+		this.bucketSize = bucketSize;
+		this.bucketsX = (width + bucketSize - 1) / bucketSize;
+		this.bucketsY = (height + bucketSize - 1) / bucketSize;
+		this.bucketCells = new int[bucketsX * bucketsY][];
+		this.bucketSizes = new int[bucketsX * bucketsY];
+		this.members = new BitSet(width * height);
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return false if the cell was already in the index
+	 */
+	public boolean add(int x, int y) {
+		int cell = x * height + y;
+		if (members.get(cell)) {
+			return false;
+		}
+		members.set(cell);
+		int bucket = (x / bucketSize) * bucketsY + y / bucketSize;
+		if (bucketCells[bucket] == null) {
+			bucketCells[bucket] = new int[4];
+		} else if (bucketSizes[bucket] == bucketCells[bucket].length) {
+			bucketCells[bucket] = Arrays.copyOf(bucketCells[bucket], bucketSizes[bucket] * 2);
+		}
+		bucketCells[bucket][bucketSizes[bucket]++] = cell;
+		size++;
+		return true;
+	}
+
+	public boolean contains(int x, int y) {
+		return members.get(x * height + y);
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @param k
+	 * @param cells filled with the ids of the nearest cells, nearest first, must hold k
+	 * @return number of cells filled in, less than k if the index holds fewer
+	 */
+	public int findNearest(int x, int y, int k, int[] cells) {
+		if (bestDistances.length < k) {
+			bestDistances = new int[k];
+		}
+		int found = 0;
+		int bucketX = Math.min(x / bucketSize, bucketsX - 1);
+		int bucketY = Math.min(y / bucketSize, bucketsY - 1);
+		int rings = Math.max(bucketsX, bucketsY);
+		for (int ring = 0; ring < rings; ring++) {
+			// every bucket in this ring is more than ring - 1 buckets away along some axis
+			int nearestInRing = ring == 0 ? 0 : (ring - 1) * bucketSize + 1;
+			if (found == k && nearestInRing > bestDistances[k - 1]) {
+				break;
+			}
+			for (int bx = bucketX - ring; bx <= bucketX + ring; bx++) {
+				if (bx < 0 || bx >= bucketsX) {
+					continue;
+				}
+				boolean edgeColumn = bx == bucketX - ring || bx == bucketX + ring;
+				// inner columns only have their top and bottom bucket on the ring
+				int step = edgeColumn || ring == 0 ? 1 : 2 * ring;
+				for (int by = bucketY - ring; by <= bucketY + ring; by += step) {
+					if (by >= 0 && by < bucketsY) {
+						found = scanBucket(bx * bucketsY + by, x, y, k, cells, found);
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	private int scanBucket(int bucket, int x, int y, int k, int[] cells, int found) {
+		for (int i = 0; i < bucketSizes[bucket]; i++) {
+			int cell = bucketCells[bucket][i];
+			int distance = Math.abs(cell / height - x) + Math.abs(cell % height - y);
+			if (found == k && distance >= bestDistances[k - 1]) {
+				continue;
+			}
+			// insertion into the sorted best list, dropping the worst once it is full
+			int slot = found == k ? k - 1 : found++;
+			while (slot > 0 && bestDistances[slot - 1] > distance) {
+				bestDistances[slot] = bestDistances[slot - 1];
+				cells[slot] = cells[slot - 1];
+				slot--;
+			}
+			bestDistances[slot] = distance;
+			cells[slot] = cell;
+		}
+		return found;
+	}
+
+	public int getX(int cell) {
+		return cell / height;
+	}
+
+	public int getY(int cell) {
+		return cell % height;
+	}
+
+	/**
+	 * @return number of cells in the index
+	 */
+	public int size() {
+		return size;
+	}
+}
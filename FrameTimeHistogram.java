@@ -0,0 +1,61 @@
+package mycontroller;
+
+/**
+ * Histogram of how long each update() takes, in power-of-two buckets of
+ * nanoseconds. Bucket i counts frames that took [2^i, 2^(i+1)) ns.
+ * Recording a frame doesn't allocate.
+ */
+public class FrameTimeHistogram {
+	private static final int BUCKETS = 40;
+
+	private long[] counts = new long[BUCKETS];
+	private long totalFrames = 0;
+	private long maxNanos = 0;
+
+	public void record(long nanos) {
+		int bucket = nanos <= 1 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+		counts[Math.min(bucket, BUCKETS - 1)]++;
+		totalFrames++;
+		maxNanos = Math.max(maxNanos, nanos);
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return upper bound of the bucket holding that percentile, in nanoseconds
+	 */
+	public long getPercentile(double percentile) {
+		long rank = (long) Math.ceil(totalFrames * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank && seen > 0) {
+				return 1L << (i + 1);
+			}
+		}
+		return 0;
+	}
+
+	public long getCount(int bucket) {
+		return counts[bucket];
+	}
+
+	public long getTotalFrames() {
+		return totalFrames;
+	}
+
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	public void reset() {
+		counts = new long[BUCKETS];
+		totalFrames = 0;
+		maxNanos = 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("frames=%d p50<%.3fms p99<%.3fms max=%.3fms", totalFrames, getPercentile(50) / 1e6,
+				getPercentile(99) / 1e6, maxNanos / 1e6);
+	}
+}
@@ -0,0 +1,96 @@
+package mycontroller;
+
+/**
+ * A set of cell ids with constant time add, remove and membership, and
+ * iteration in time proportional to its size.
+ *
+ * Membership is a bitset. Members are also chained into a doubly linked
+ * list threaded through two int arrays indexed by cell id, so nothing is
+ * allocated as cells come and go. Iterate with
+ * for (int cell = set.first(); cell != FrontierSet.END; cell = set.next(cell)).
+ * A cell may be removed while iterating, as long as next() was read first.
+ */
+public class FrontierSet {
+	public static final int END = -1;
+
+	private final long[] members;
+	private final int[] nextCells;
+	private final int[] previousCells;
+	private int head = END;
+	private int size = 0;
+
+	public FrontierSet(int cellCount) {
+		this.members = new long[(cellCount + 63) / 64];
+		this.nextCells = new int[cellCount];
+		this.previousCells = new int[cellCount];
+	}
+
+	public boolean contains(int cell) {
+		return (members[cell >>> 6] & (1L << cell)) != 0;
+	}
+
+	/**
+	 * @param cell
+	 * @return false if the cell was already in the set
+	 */
+	public boolean add(int cell) {
+		if (contains(cell)) {
+			return false;
+		}
+		members[cell >>> 6] |= 1L << cell;
+		nextCells[cell] = head;
+		previousCells[cell] = END;
+		if (head != END) {
+			previousCells[head] = cell;
+		}
+		head = cell;
+		size++;
+		return true;
+	}
+
+	/**
+	 * @param cell
+	 * @return false if the cell wasn't in the set
+	 */
+	public boolean remove(int cell) {
+		if (!contains(cell)) {
+			return false;
+		}
+		members[cell >>> 6] &= ~(1L << cell);
+		int next = nextCells[cell];
+		int previous = previousCells[cell];
+		if (previous == END) {
+			head = next;
+		} else {
+			nextCells[previous] = next;
+		}
+		if (next != END) {
+			previousCells[next] = previous;
+		}
+		size--;
+		return true;
+	}
+
+	/**
+	 * @return a member, END if the set is empty
+	 */
+	public int first() {
+		return head;
+	}
+
+	/**
+	 * @param cell a member
+	 * @return the member after it, END if it is the last
+	 */
+	public int next(int cell) {
+		return nextCells[cell];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+}
@@ -1,22 +1,91 @@
 package mycontroller;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+
+import mycontroller.AStarSearch.DistanceField;
+import mycontroller.AStarSearch.KeyOrderSolver;
+import mycontroller.AStarSearch.SearchGrid;
 import tiles.MapTile;
 import utilities.Coordinate;
+import world.World;
 
 public class GameMap {
-	private HashMap<Coordinate, HashMapTile> updatedMap = new HashMap<>();
+	public static final int NO_KEY_CELL = -1;
+	private static final int NO_VIEW = Integer.MIN_VALUE;
+	private static final int HEALTH_BUCKET_SIZE = 8;
+	private static final int MAX_DISTANCE_FIELDS = 16;
+
+	private GridMap grid = new GridMap(World.MAP_WIDTH, World.MAP_HEIGHT); //Tile class, explored bit and key value per cell
 	private int totalNumberOfKeys;
 	private int numOfKeysFound = 0;
 	private ArrayList<Integer> findingKeyOrder;
-	private Coordinate nearestHealthTile = null;
+	private Coordinate currentKeyCoordinate = null; //Key the car is heading for, handed out by getNextKeyCoordinate
+	private KeyOrderSolver keyOrderSolver = new KeyOrderSolver();
+	private boolean keyReordering = false; //Off while the car has to hand keys in counting down, see planKeyOrder
+	private ArrayList<Coordinate> healthTiles = new ArrayList<>(); //Every health trap seen so far
+	private BucketGridIndex healthIndex = new BucketGridIndex(World.MAP_WIDTH, World.MAP_HEIGHT,
+			HEALTH_BUCKET_SIZE); //The same health traps, for nearest queries
+	private int[] nearestHealthCells = new int[1]; //Scratch for health trap queries
+	private ArrayList<MapChangeListener> mapChangeListeners = new ArrayList<>();
+	private int version = 0; //Bumped every time a tile changes type
+	private int[] cellVersions = new int[World.MAP_WIDTH * World.MAP_HEIGHT]; //Version of each cell's last change
+	private SearchGrid fieldGrid = null; //Built with the first distance field, shared by all of them
+	//Goal cell -> field leading to it, least recently used first
+	private LinkedHashMap<Integer, CachedField> distanceFields = new LinkedHashMap<Integer, CachedField>(
+			MAX_DISTANCE_FIELDS, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, CachedField> eldest) {
+			return size() > MAX_DISTANCE_FIELDS;
+		}
+	};
+	private CachedField exitField = null;
+	private int[] fieldChanges = new int[16]; //Cells whose cost in fieldGrid changed, oldest first
+	private int fieldChangeCount = 0;
+	private int[] keyCells; //Key value -> cell id of the tile holding it, NO_KEY_CELL until seen
+	private int lastViewX = NO_VIEW; //Car position of the last view, its cells don't need reading again
+	private int lastViewY = NO_VIEW;
+	private final Coordinate viewProbe = new Coordinate(0, 0); //Reused to look cells up in the view
+	private int[] changedCells = new int[16]; //Cells whose tile type changed in the last updateMap
+	private int changedCellCount = 0;
+	private int cellsProcessed = 0;
+	private long totalCellsProcessed = 0;
+	private long totalViewCells = 0;
+	private FrontierSet frontier = new FrontierSet(World.MAP_WIDTH * World.MAP_HEIGHT); //Explored open cells next to unexplored ones
+	private int openCells = 0; //Cells that aren't walls, what there is to explore
+	private int exploredOpenCells = 0;
+	private volatile MapSnapshot snapshot; //Latest published copy of the grid, for other threads
+	private boolean[] dirtyChunks; //Snapshot chunks updateMap has touched since the last publish
+	private int dirtyChunkCount = 0;
+	private int chunksCopied = 0;
 
 	public GameMap(HashMap<Coordinate, MapTile> map, int totalNumberOfKeys) {
-		createMap(map);
+		this(map, totalNumberOfKeys, null);
+	}
+
+	/**
+	 * @param map from getMap()
+	 * @param totalNumberOfKeys
+	 * @param cache opened on map, the grid is read from it on a hit and written to it on a miss, may be null
+	 */
+	public GameMap(HashMap<Coordinate, MapTile> map, int totalNumberOfKeys, MapAnalysisCache cache) {
+		if (cache != null && cache.restoreGrid(grid, map)) {
+			countOpenCells();
+		} else {
+			createMap(map);
+			if (cache != null) {
+				cache.save(grid, null);
+			}
+		}
 		this.totalNumberOfKeys = totalNumberOfKeys;
+		keyCells = new int[totalNumberOfKeys + 1];
+		Arrays.fill(keyCells, NO_KEY_CELL);
 		findingKeyOrder = descendingKeyOrder(totalNumberOfKeys);
+		snapshot = MapSnapshot.of(grid, version);
+		dirtyChunks = new boolean[snapshot.getChunkCount()];
 	}
 
 	/**
@@ -24,75 +93,456 @@ public class GameMap {
 	 * @param map
 	 */
 	private void createMap(HashMap<Coordinate, MapTile> map) {
-		for (Coordinate key : map.keySet()) {
-			System.out.println(map.get(key).getType());
-			getUpdatedMap().put(key, new HashMapTile(map.get(key)));
+		for (Map.Entry<Coordinate, MapTile> entry : map.entrySet()) {
+			grid.setTile(entry.getKey().x, entry.getKey().y, entry.getValue());
+		}
+		countOpenCells();
+	}
+
+	private void countOpenCells() {
+		openCells = 0;
+		for (int x = 0; x < grid.getWidth(); x++) {
+			for (int y = 0; y < grid.getHeight(); y++) {
+				if (isOpen(grid.getTile(x, y))) {
+					openCells++;
+				}
+			}
 		}
 	}
 
 	/**
-	 * update map with getView()
+	 * update map with the part of getView() the car hasn't seen from its last position
+	 * the view is the square of viewSquare cells around the car, cells still in it from last tick were
+	 * handled then, so only the strip the car has moved into is read
 	 * set the key value if it is a lavatrap with key
 	 * check for health trap
 	 * @param currentView
+	 * @param carPosition centre of the view
+	 * @param viewSquare cells the view reaches out from the car
 	 */
-    public void updateMap(HashMap<Coordinate, MapTile> currentView) {
+	public void updateMap(HashMap<Coordinate, MapTile> currentView, Coordinate carPosition, int viewSquare) {
+		changedCellCount = 0;
+		cellsProcessed = 0;
+		totalViewCells += currentView.size();
+
+		int dx = Math.abs(carPosition.x - lastViewX);
+		int dy = Math.abs(carPosition.y - lastViewY);
+		boolean overlaps = lastViewX != NO_VIEW && dx <= 2 * viewSquare && dy <= 2 * viewSquare;
+		for (int x = carPosition.x - viewSquare; x <= carPosition.x + viewSquare; x++) {
+			boolean newColumn = !overlaps || Math.abs(x - lastViewX) > viewSquare;
+			for (int y = carPosition.y - viewSquare; y <= carPosition.y + viewSquare; y++) {
+				if (!newColumn && Math.abs(y - lastViewY) <= viewSquare) {
+					continue;
+				}
+				if (!grid.isInside(x, y)) {
+					continue;
+				}
+				viewProbe.x = x;
+				viewProbe.y = y;
+				MapTile tileFromView = currentView.get(viewProbe);
+				if (tileFromView != null) {
+					updateCell(x, y, tileFromView);
+					cellsProcessed++;
+				}
+			}
+		}
+		lastViewX = carPosition.x;
+		lastViewY = carPosition.y;
+		totalCellsProcessed += cellsProcessed;
+		publishSnapshot();
+	}
+
+	private void updateCell(int x, int y, MapTile tileFromView) {
+		if (TilesChecker.checkTileIsEmpty(tileFromView)){
+			return;
+		}
+
+		//check if it has been explored
+		if (!grid.isExplored(x, y)) {
 
-	    //iterate currentView
-		for (Coordinate key : currentView.keySet()) {
-            //get the corresponding tile from view based on coordinate
-            MapTile tileFromView = currentView.get(key);
+			//check if its a lava trap by using TilesWithKeysChecker class
+			if (TilesChecker.checkTileWithKeys(tileFromView)) {
 
-			if (TilesChecker.checkTileIsEmpty(currentView.get(key))){
-				break;
+				//Assume without key, key value = 0
+				//if it contains a key, set key value and remember where it is
+				int keyValue = TilesChecker.getKeyFromTile(tileFromView);
+				if (keyValue != 0) {
+					grid.setKeyValue(x, y, keyValue);
+					if (keyValue < keyCells.length) {
+						keyCells[keyValue] = grid.getCellId(x, y);
+					}
+					numOfKeysFound++;
+				}
+			}
+
+			//only tell the planners about tiles getMap() got wrong (e.g. traps shown as road)
+			boolean tileChanged = !TilesChecker.checkTileSameType(grid.getTile(x, y), tileFromView);
+			if (isOpen(grid.getTile(x, y)) != isOpen(tileFromView)) {
+				openCells += isOpen(tileFromView) ? 1 : -1;
+			}
+
+			//set explored and change tile type
+			markChunkDirty(x, y);
+			grid.setExplored(x, y, true);
+			grid.setTile(x, y, tileFromView);
+			if (isOpen(tileFromView)) {
+				exploredOpenCells++;
+			}
+			updateFrontier(x, y);
+			updateFrontier(x - 1, y);
+			updateFrontier(x + 1, y);
+			updateFrontier(x, y - 1);
+			updateFrontier(x, y + 1);
+
+			if (tileChanged) {
+				notifyTileChanged(x, y, tileFromView);
 			}
-			HashMapTile tileFromMap = getUpdatedMap().get(key);
-
-			//get from map the object to check if it has been explored
-			if (tileFromMap.getExplored() == 0) {
-			
-				//check if its a lava trap by using TilesWithKeysChecker class
-				if (TilesChecker.checkTileWithKeys(tileFromView)) {
-
-					//Assume without key, key value = 0
-					//if it contains a key, set key value 
-					if (TilesChecker.getKeyFromTile(tileFromView) != 0) {
-						tileFromMap.setKeyValue(TilesChecker.getKeyFromTile(tileFromView));
-						numOfKeysFound++;
+		}
+
+		if (TilesChecker.checkForHealthTile(tileFromView) && healthIndex.add(x, y)) {
+			healthTiles.add(new Coordinate(x, y));
+		}
+	}
+
+	private void markChunkDirty(int x, int y) {
+		int chunk = snapshot.getChunkId(x, y);
+		if (!dirtyChunks[chunk]) {
+			dirtyChunks[chunk] = true;
+			dirtyChunkCount++;
+		}
+	}
+
+	/**
+	 * copy the chunks touched since the last snapshot into a new one and hand it to readers
+	 * nothing is copied or published if no chunk was touched
+	 */
+	private void publishSnapshot() {
+		chunksCopied = dirtyChunkCount;
+		if (dirtyChunkCount == 0) {
+			return;
+		}
+		MapSnapshot next = snapshot.withChanges(grid, dirtyChunks, version);
+		Arrays.fill(dirtyChunks, false);
+		dirtyChunkCount = 0;
+		snapshot = next;
+	}
+
+	/**
+	 * safe to call from any thread, the snapshot never changes once published
+	 * @return the grid as it was at the end of the latest updateMap
+	 */
+	public MapSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * @return snapshot chunks copied by the last updateMap
+	 */
+	public int getChunksCopied() {
+		return chunksCopied;
+	}
+
+	private static boolean isOpen(MapTile tile) {
+		return tile != null && !tile.isType(MapTile.Type.WALL) && !tile.isType(MapTile.Type.EMPTY);
+	}
+
+	/**
+	 * a cell is on the frontier if it is explored, open and next to an open cell that isn't explored yet
+	 * @param x
+	 * @param y
+	 */
+	private void updateFrontier(int x, int y) {
+		if (!grid.isInside(x, y)) {
+			return;
+		}
+		int cellId = grid.getCellId(x, y);
+		if (grid.isExplored(x, y) && isOpen(grid.getTile(x, y)) && (isUnexplored(x - 1, y) || isUnexplored(x + 1, y)
+				|| isUnexplored(x, y - 1) || isUnexplored(x, y + 1))) {
+			frontier.add(cellId);
+		} else {
+			frontier.remove(cellId);
+		}
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return true if the cell is on the map, isn't a wall and hasn't been seen yet
+	 */
+	public boolean isUnexplored(int x, int y) {
+		return grid.isInside(x, y) && !grid.isExplored(x, y) && isOpen(grid.getTile(x, y));
+	}
+
+	/**
+	 * explored open cells next to unexplored ones, kept up to date by updateMap
+	 * @return cell ids, x * MAP_HEIGHT + y, not to be changed by the caller
+	 */
+	public FrontierSet getFrontier() {
+		return frontier;
+	}
+
+	public int getFrontierSize() {
+		return frontier.size();
+	}
+
+	/**
+	 * @return percentage of the map's open cells that have been explored
+	 */
+	public float getCoverage() {
+		return openCells == 0 ? 100 : 100f * exploredOpenCells / openCells;
+	}
+
+	private void notifyTileChanged(int x, int y, MapTile tile) {
+		version++;
+		int cellId = grid.getCellId(x, y);
+		cellVersions[cellId] = version;
+		if (changedCellCount == changedCells.length) {
+			changedCells = Arrays.copyOf(changedCells, changedCells.length * 2);
+		}
+		changedCells[changedCellCount++] = cellId;
+		repairDistanceFields(x, y, tile);
+		for (MapChangeListener listener : mapChangeListeners) {
+			listener.tileChanged(x, y, tile);
+		}
+	}
+
+	/**
+	 * @return number of cells whose tile type changed in the last updateMap
+	 */
+	public int getChangedCellCount() {
+		return changedCellCount;
+	}
+
+	/**
+	 * @param index below getChangedCellCount()
+	 * @return cell id, x * MAP_HEIGHT + y, of a cell that changed in the last updateMap
+	 */
+	public int getChangedCell(int index) {
+		return changedCells[index];
+	}
+
+	/**
+	 * @return view cells read by the last updateMap
+	 */
+	public int getCellsProcessed() {
+		return cellsProcessed;
+	}
+
+	/**
+	 * @return view cells read by every updateMap so far
+	 */
+	public long getTotalCellsProcessed() {
+		return totalCellsProcessed;
+	}
+
+	/**
+	 * @return cells in every view passed to updateMap so far, what reading each view whole would have cost
+	 */
+	public long getTotalViewCells() {
+		return totalViewCells;
+	}
+
+	/**
+	 * keep the shared grid current and log the cell, the fields themselves are repaired when next asked for
+	 * @param x
+	 * @param y
+	 * @param tile
+	 */
+	private void repairDistanceFields(int x, int y, MapTile tile) {
+		if (fieldGrid == null || !fieldGrid.updateCell(x, y, tile)) {
+			return;
+		}
+		if (fieldChangeCount == fieldChanges.length) {
+			fieldChanges = Arrays.copyOf(fieldChanges, fieldChanges.length * 2);
+		}
+		fieldChanges[fieldChangeCount++] = fieldGrid.getCellId(x, y);
+	}
+
+	/**
+	 * only cells whose route to a goal ran through a tile changed since the field was last used are recomputed
+	 * @param cached
+	 * @return the repaired field
+	 */
+	private DistanceField repair(CachedField cached) {
+		while (cached.appliedChanges < fieldChangeCount) {
+			cached.field.cellChanged(fieldChanges[cached.appliedChanges++]);
+		}
+		return cached.field;
+	}
+
+	private SearchGrid getFieldGrid() {
+		if (fieldGrid == null) {
+			ArrayList<MapTile> wallsToAvoid = new ArrayList<>();
+			wallsToAvoid.add(new MapTile(MapTile.Type.WALL));
+			fieldGrid = new SearchGrid(grid.asMap(), wallsToAvoid, World.MAP_WIDTH, World.MAP_HEIGHT);
+		}
+		return fieldGrid;
+	}
+
+	/**
+	 * distance field towards one cell, e.g. a key or a health trap
+	 * built on first use and repaired for the tiles updateMap has revealed since, each time it is asked for
+	 * only the MAX_DISTANCE_FIELDS most recently used goals are kept, so ask again rather than hold on to one
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public DistanceField getDistanceField(int x, int y) {
+		SearchGrid grid = getFieldGrid();
+		int cellId = grid.getCellId(x, y);
+		CachedField cached = distanceFields.get(cellId);
+		if (cached == null) {
+			cached = new CachedField(new DistanceField(grid, cellId), fieldChangeCount);
+			distanceFields.put(cellId, cached);
+		}
+		return repair(cached);
+	}
+
+	/**
+	 * @param keyValue
+	 * @return distance field towards the tile holding the key, null if it hasn't been seen yet
+	 */
+	public DistanceField getKeyField(int keyValue) {
+		Coordinate keyPosition = findKeyCoordinate(keyValue);
+		return keyPosition == null ? null : getDistanceField(keyPosition.x, keyPosition.y);
+	}
+
+	/**
+	 * @return distance field towards the nearest finish tile
+	 */
+	public DistanceField getExitField() {
+		if (exitField == null) {
+			SearchGrid searchGrid = getFieldGrid();
+			ArrayList<Integer> finishCells = new ArrayList<>();
+			for (int x = 0; x < grid.getWidth(); x++) {
+				for (int y = 0; y < grid.getHeight(); y++) {
+					MapTile tile = grid.getTile(x, y);
+					if (tile != null && tile.getType() == MapTile.Type.FINISH) {
+						finishCells.add(searchGrid.getCellId(x, y));
 					}
 				}
+			}
+			int[] goals = new int[finishCells.size()];
+			for (int i = 0; i < goals.length; i++) {
+				goals[i] = finishCells.get(i);
+			}
+			exitField = new CachedField(new DistanceField(searchGrid, goals), fieldChangeCount);
+		}
+		return repair(exitField);
+	}
+
+	public void addMapChangeListener(MapChangeListener listener) {
+		mapChangeListeners.add(listener);
+	}
+
+	public void removeMapChangeListener(MapChangeListener listener) {
+		mapChangeListeners.remove(listener);
+	}
+
+	/**
+	 * @return number of tile changes seen so far
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return the version at which the cell last changed, 0 if it never has
+	 */
+	public int getCellVersion(int x, int y) {
+		return cellVersions[x * World.MAP_HEIGHT + y];
+	}
 
-				//set explored and change tile type
-				tileFromMap.setExplored(1);
-				tileFromMap.setTile(tileFromView);
-				updatedMap.put(key, tileFromMap);
+	/**
+	 * reorder the keys still to find so the whole drive, from the car through every key to the exit, is shortest
+	 * keys that haven't been seen yet keep their descending order at the end
+	 * does nothing unless setKeyReordering(true) was called: the car counts its keys down from getKey(), so
+	 * by default they are collected in descending order, the one order every version of the game accepts
+	 * @param carPosition
+	 */
+	public void planKeyOrder(Coordinate carPosition) {
+		if (!keyReordering) {
+			return;
+		}
+		ArrayList<Integer> knownKeys = new ArrayList<>();
+		ArrayList<Coordinate> knownPositions = new ArrayList<>();
+		ArrayList<Integer> unknownKeys = new ArrayList<>();
+		for (int key : findingKeyOrder) {
+			Coordinate position = findKeyCoordinate(key);
+			if (position == null) {
+				unknownKeys.add(key);
+			} else {
+				knownKeys.add(key);
+				knownPositions.add(position);
 			}
+		}
 
-            //TODO: check logic here
-            if (TilesChecker.checkForHealthTile(tileFromView)) {
-                nearestHealthTile = key;
-            }
+		//row/column 0 is the car, then the keys, then the exit
+		int keys = knownKeys.size();
+		int[][] distances = new int[keys + 2][keys + 2];
+		Coordinate[] positions = new Coordinate[keys + 2];
+		positions[0] = carPosition;
+		for (int i = 0; i < keys; i++) {
+			positions[i + 1] = knownPositions.get(i);
+		}
+		for (int to = 1; to <= keys + 1; to++) {
+			DistanceField field = to <= keys ? getDistanceField(positions[to].x, positions[to].y) : getExitField();
+			for (int from = 0; from <= keys; from++) {
+				distances[from][to] = from == to ? 0 : field.getDistance(positions[from].x, positions[from].y);
+			}
 		}
 
-		if(numOfKeysFound == totalNumberOfKeys){
-			System.out.println("Start finding key strategy");
+		ArrayList<Integer> newOrder = new ArrayList<>();
+		for (int key : keyOrderSolver.solve(distances)) {
+			newOrder.add(knownKeys.get(key));
 		}
+		newOrder.addAll(unknownKeys);
+		findingKeyOrder = newOrder;
+	}
+
+	/**
+	 * @param keyReordering true to let planKeyOrder reorder the keys, only for a game that accepts keys in any order
+	 */
+	public void setKeyReordering(boolean keyReordering) {
+		this.keyReordering = keyReordering;
+	}
+
+	public boolean isKeyReordering() {
+		return keyReordering;
 	}
 
     /**
-     * get the next key coordinate using the updatedMap
-     * @return
+     * move on to the next key in findingKeyOrder
+     * @return coordinate of the key, null if it hasn't been seen yet
      */
     public Coordinate getNextKeyCoordinate() {
 	     int nextKey = findingKeyOrder.remove(0);
-	     for (Map.Entry<Coordinate, HashMapTile> entry : updatedMap.entrySet()) {
-	         if (entry.getValue().getKeyValue() == nextKey) {
-	             return entry.getKey();
-             }
-         }
-         return null;
+	     currentKeyCoordinate = findKeyCoordinate(nextKey);
+	     return currentKeyCoordinate;
     }
 
+	/**
+	 * @return the key last handed out by getNextKeyCoordinate
+	 */
+	public Coordinate getCurrentKeyCoordinate() {
+		return currentKeyCoordinate;
+	}
+
+	private Coordinate findKeyCoordinate(int keyValue) {
+		int cellId = getKeyCell(keyValue);
+		return cellId == NO_KEY_CELL ? null : new Coordinate(grid.getX(cellId), grid.getY(cellId));
+	}
+
+	/**
+	 * @param keyValue
+	 * @return cell id, x * MAP_HEIGHT + y, of the tile holding the key, NO_KEY_CELL if it hasn't been seen yet
+	 */
+	public int getKeyCell(int keyValue) {
+		return keyValue > 0 && keyValue < keyCells.length ? keyCells[keyValue] : NO_KEY_CELL;
+	}
+
     /**
      * return a list on the order to look for keys
      * @param maxKey
@@ -106,16 +556,85 @@ public class GameMap {
 		return newList;
 	}
 
-	public HashMap<Coordinate, HashMapTile> getUpdatedMap() {
-		return updatedMap;
+	/**
+	 * @return Map view of the grid, for code that still looks tiles up by Coordinate
+	 * only for the update thread, other threads read getSnapshot()
+	 */
+	public Map<Coordinate, HashMapTile> getUpdatedMap() {
+		return grid.asMap();
+	}
+
+	public GridMap getGrid() {
+		return grid;
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return tile at the cell, null if the cell is off the map
+	 */
+	public MapTile getTile(int x, int y) {
+		return grid.isInside(x, y) ? grid.getTile(x, y) : null;
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return key held by the cell, 0 if none
+	 */
+	public int getKeyValue(int x, int y) {
+		return grid.getKeyValue(x, y);
 	}
 
-	public void setUpdatedMap(HashMap<Coordinate, HashMapTile> updatedMap) {
-		this.updatedMap = updatedMap;
+	public boolean isExplored(int x, int y) {
+		return grid.isExplored(x, y);
 	}
 	
-    public Coordinate getNearestHealthTile() {
-        return nearestHealthTile;
-    }
+	/**
+	 * @param position
+	 * @return health trap nearest the position by Manhattan distance, null if none has been seen
+	 */
+	public Coordinate getNearestHealthTile(Coordinate position) {
+		ArrayList<Coordinate> nearest = getNearestHealthTiles(position, 1);
+		return nearest.isEmpty() ? null : nearest.get(0);
+	}
+
+	/**
+	 * candidates to rank by path cost, e.g. with MultiTargetSearch
+	 * @param position
+	 * @param count
+	 * @return up to count health traps nearest the position by Manhattan distance, nearest first
+	 */
+	public ArrayList<Coordinate> getNearestHealthTiles(Coordinate position, int count) {
+		if (nearestHealthCells.length < count) {
+			nearestHealthCells = new int[count];
+		}
+		int found = healthIndex.findNearest(position.x, position.y, count, nearestHealthCells);
+		ArrayList<Coordinate> nearest = new ArrayList<>(found);
+		for (int i = 0; i < found; i++) {
+			nearest.add(new Coordinate(healthIndex.getX(nearestHealthCells[i]),
+					healthIndex.getY(nearestHealthCells[i])));
+		}
+		return nearest;
+	}
+
+	/**
+	 * @return every health trap seen so far, in the order they were found
+	 */
+	public ArrayList<Coordinate> getHealthTiles() {
+		return new ArrayList<>(healthTiles);
+	}
+
+	/**
+	 * A distance field and how much of fieldChanges it has been repaired for.
+	 */
+	private static final class CachedField {
+		private final DistanceField field;
+		private int appliedChanges;
 
+		private CachedField(DistanceField field, int appliedChanges) {
+			this.field = field;
+			this.appliedChanges = appliedChanges;
+		}
+	}
 }
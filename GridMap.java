@@ -0,0 +1,307 @@
+package mycontroller;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import tiles.MapTile;
+import utilities.Coordinate;
+
+/**
+ * Dense storage for GameMap, in flat primitive arrays indexed by x * height + y.
+ *
+ * Each cell keeps one byte for its tile class, one bit for whether it has
+ * been explored and one byte for its key value. A tile class is a kind of
+ * tile as TilesChecker.checkTileSameType() tells them apart (road, wall,
+ * lava, health trap, ...). Classes are numbered as they are first seen,
+ * and the first tile seen of each class is kept as the shared instance
+ * handed back for every cell of that class.
+ *
+ * asMap() is a read/write Map view for code written against the old
+ * HashMap<Coordinate, HashMapTile>. Its HashMapTile values are shared
+ * flyweights, one per (class, explored, key) combination, so they must
+ * not be changed through their setters.
+ */
+public class GridMap {
+	public static final byte NO_TILE = 0;
+	static final int MAX_CLASSES = 64;
+	private static final int MAX_KEY = 127;
+
+	private final int width;
+	private final int height;
+	private final byte[] tileClasses;
+	private final long[] explored;
+	private final byte[] keyValues;
+	private int size = 0; //cells holding a tile
+
+	private final MapTile[] prototypes = new MapTile[MAX_CLASSES]; //class -> shared tile, slot 0 unused
+	private int classCount = 1;
+	private final HashMapTile[][] flyweights = new HashMapTile[MAX_KEY + 1][]; //key -> (class, explored)
+	private final Map<Coordinate, HashMapTile> view = new MapView();
+
+	public GridMap(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.tileClasses = new byte[width * height];
+		this.explored = new long[(width * height + 63) / 64];
+		this.keyValues = new byte[width * height];
+	}
+
+	/**
+	 * @param tile
+	 * @return class number of the tile, registering the tile as its class's shared instance if it is new
+	 */
+	public byte getTileClass(MapTile tile) {
+		for (int tileClass = 1; tileClass < classCount; tileClass++) {
+			if (TilesChecker.checkTileSameType(prototypes[tileClass], tile)) {
+				return (byte) tileClass;
+			}
+		}
+		if (classCount == MAX_CLASSES) {
+			throw new IllegalStateException("too many kinds of tile: " + MAX_CLASSES);
+		}
+		prototypes[classCount] = tile;
+		return (byte) classCount++;
+	}
+
+	/**
+	 * @param tileClass
+	 * @return shared tile of the class, null for NO_TILE
+	 */
+	public MapTile getPrototype(byte tileClass) {
+		return prototypes[tileClass];
+	}
+
+	public int getClassCount() {
+		return classCount;
+	}
+
+	public boolean isInside(int x, int y) {
+		return x >= 0 && x < width && y >= 0 && y < height;
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return true if a tile has been stored for the cell
+	 */
+	public boolean contains(int x, int y) {
+		return isInside(x, y) && tileClasses[getCellId(x, y)] != NO_TILE;
+	}
+
+	public byte getTileClass(int x, int y) {
+		return tileClasses[getCellId(x, y)];
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return shared tile of the cell's class, null if there is none
+	 */
+	public MapTile getTile(int x, int y) {
+		return prototypes[tileClasses[getCellId(x, y)]];
+	}
+
+	public void setTile(int x, int y, MapTile tile) {
+		int id = getCellId(x, y);
+		if (tileClasses[id] == NO_TILE) {
+			size++;
+		}
+		tileClasses[id] = getTileClass(tile);
+	}
+
+	public boolean isExplored(int x, int y) {
+		int id = getCellId(x, y);
+		return (explored[id >>> 6] & (1L << id)) != 0;
+	}
+
+	public void setExplored(int x, int y, boolean isExplored) {
+		int id = getCellId(x, y);
+		if (isExplored) {
+			explored[id >>> 6] |= 1L << id;
+		} else {
+			explored[id >>> 6] &= ~(1L << id);
+		}
+	}
+
+	public int getKeyValue(int x, int y) {
+		return keyValues[getCellId(x, y)];
+	}
+
+	public void setKeyValue(int x, int y, int keyValue) {
+		if (keyValue < 0 || keyValue > MAX_KEY) {
+			throw new IllegalArgumentException("key out of range: " + keyValue);
+		}
+		keyValues[getCellId(x, y)] = (byte) keyValue;
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return the cell as a shared HashMapTile, null if there is no tile
+	 */
+	public HashMapTile getHashMapTile(int x, int y) {
+		int id = getCellId(x, y);
+		byte tileClass = tileClasses[id];
+		if (tileClass == NO_TILE) {
+			return null;
+		}
+		int keyValue = keyValues[id];
+		int isExplored = (explored[id >>> 6] & (1L << id)) != 0 ? 1 : 0;
+		if (flyweights[keyValue] == null) {
+			flyweights[keyValue] = new HashMapTile[2 * MAX_CLASSES];
+		}
+		int slot = 2 * tileClass + isExplored;
+		HashMapTile tile = flyweights[keyValue][slot];
+		if (tile == null) {
+			tile = new HashMapTile(prototypes[tileClass]);
+			tile.setExplored(isExplored);
+			tile.setKeyValue(keyValue);
+			flyweights[keyValue][slot] = tile;
+		}
+		return tile;
+	}
+
+	/**
+	 * @return the class of every cell, by cell id, for MapAnalysisCache to write out as is
+	 */
+	byte[] getTileClasses() {
+		return tileClasses;
+	}
+
+	/**
+	 * fill an empty grid with tile classes read back by MapAnalysisCache
+	 * @param classes class of every cell, by cell id
+	 * @param classPrototypes shared tile of each class, slot 0 unused
+	 */
+	void restore(byte[] classes, MapTile[] classPrototypes) {
+		System.arraycopy(classPrototypes, 1, prototypes, 1, classPrototypes.length - 1);
+		classCount = classPrototypes.length;
+		System.arraycopy(classes, 0, tileClasses, 0, tileClasses.length);
+		size = 0;
+		for (byte tileClass : tileClasses) {
+			if (tileClass != NO_TILE) {
+				size++;
+			}
+		}
+	}
+
+	public int getCellId(int x, int y) {
+		return x * height + y;
+	}
+
+	public int getX(int id) {
+		return id / height;
+	}
+
+	public int getY(int id) {
+		return id % height;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getCellCount() {
+		return width * height;
+	}
+
+	/**
+	 * @return number of cells holding a tile
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return Map view of the grid, reads and writes go straight to the arrays
+	 */
+	public Map<Coordinate, HashMapTile> asMap() {
+		return view;
+	}
+
+	/**
+	 * Lookups only read the key's x and y, so a reused Coordinate works as a probe.
+	 */
+	private class MapView extends AbstractMap<Coordinate, HashMapTile> {
+
+		@Override
+		public HashMapTile get(Object key) {
+			if (!(key instanceof Coordinate)) {
+				return null;
+			}
+			Coordinate coordinate = (Coordinate) key;
+			return isInside(coordinate.x, coordinate.y) ? getHashMapTile(coordinate.x, coordinate.y) : null;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return get(key) != null;
+		}
+
+		@Override
+		public HashMapTile put(Coordinate key, HashMapTile value) {
+			if (!isInside(key.x, key.y)) {
+				throw new IllegalArgumentException("outside the map: " + key);
+			}
+			HashMapTile previous = get(key);
+			setTile(key.x, key.y, value.getTile());
+			setExplored(key.x, key.y, value.getExplored() != 0);
+			setKeyValue(key.x, key.y, value.getKeyValue());
+			return previous;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public Set<Map.Entry<Coordinate, HashMapTile>> entrySet() {
+			return new AbstractSet<Map.Entry<Coordinate, HashMapTile>>() {
+				@Override
+				public Iterator<Map.Entry<Coordinate, HashMapTile>> iterator() {
+					return new Iterator<Map.Entry<Coordinate, HashMapTile>>() {
+						private int next = findFrom(0);
+
+						@Override
+						public boolean hasNext() {
+							return next < tileClasses.length;
+						}
+
+						@Override
+						public Map.Entry<Coordinate, HashMapTile> next() {
+							if (!hasNext()) {
+								throw new NoSuchElementException();
+							}
+							int id = next;
+							next = findFrom(id + 1);
+							int x = getX(id);
+							int y = getY(id);
+							return new AbstractMap.SimpleImmutableEntry<>(new Coordinate(x, y), getHashMapTile(x, y));
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return size;
+				}
+			};
+		}
+
+		private int findFrom(int id) {
+			while (id < tileClasses.length && tileClasses[id] == NO_TILE) {
+				id++;
+			}
+			return id;
+		}
+	}
+}
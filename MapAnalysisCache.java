@@ -0,0 +1,296 @@
+package mycontroller;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+
+import mycontroller.AStarSearch.LandmarkHeuristic;
+import tiles.MapTile;
+import tiles.TrapTile;
+import utilities.Coordinate;
+
+/**
+ * Keeps what is worked out from getMap() at startup in a binary file per
+ * map layout, so later runs on the same map can read it back instead.
+ *
+ * The file is named after a hash of the layout. It holds the dense grid's
+ * tile classes and the landmark tables built on the untouched map. Reading
+ * memory-maps the file and copies the arrays straight out of it. Anything
+ * that doesn't match, such as another format version, size, hash or a cell
+ * or class out of range, counts as a miss. A cache that can't be read or
+ * written only costs the time it was meant to save, so I/O errors are
+ * treated as misses too.
+ */
+public class MapAnalysisCache {
+	private static final int MAGIC = 0x4D415043; //"MAPC"
+	private static final int FORMAT_VERSION = 1;
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4;
+
+	private final File directory;
+	private long hash;
+	private int width;
+	private int height;
+	private MappedByteBuffer buffer = null; //File of the current layout, null on a miss
+	private int landmarkOffset = 0; //Where the landmark section starts in buffer
+	private byte[] classes = null; //Untouched grid's classes, as restored or saved, for saveLandmarks()
+	private int[] classCells = null; //A cell of each class, slot 0 unused
+
+	public MapAnalysisCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * @return a folder under the system's temporary directory
+	 */
+	public static File getDefaultDirectory() {
+		return new File(System.getProperty("java.io.tmpdir"), "mycontroller-cache");
+	}
+
+	/**
+	 * hash the layout and map its cache file if there is one
+	 * @param map from getMap()
+	 * @param width
+	 * @param height
+	 * @return true if a file for the layout was found
+	 */
+	public boolean open(HashMap<Coordinate, MapTile> map, int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.hash = hashLayout(map, width, height);
+		this.buffer = null;
+		this.landmarkOffset = 0;
+		this.classes = null;
+		this.classCells = null;
+		File file = getFile();
+		if (!file.isFile()) {
+			return false;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (mapped.remaining() < HEADER_BYTES || mapped.getInt() != MAGIC || mapped.getInt() != FORMAT_VERSION
+					|| mapped.getLong() != hash || mapped.getInt() != width || mapped.getInt() != height
+					|| mapped.remaining() < 4) {
+				return false;
+			}
+			int classCount = mapped.getInt();
+			long offset = HEADER_BYTES + 4 + 4L * (classCount - 1) + (long) width * height;
+			if (classCount < 1 || offset + 4 > mapped.limit()) {
+				return false;
+			}
+			landmarkOffset = (int) offset;
+			buffer = mapped;
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * FNV-1a over every cell's tile type, and trap name for traps, in cell id order
+	 * @param map
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public static long hashLayout(HashMap<Coordinate, MapTile> map, int width, int height) {
+		long hash = mix(mix(FNV_OFFSET, width), height);
+		Coordinate probe = new Coordinate(0, 0);
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				probe.x = x;
+				probe.y = y;
+				MapTile tile = map.get(probe);
+				int code = tile == null ? -1 : tile.getType().ordinal();
+				if (tile instanceof TrapTile) {
+					code = 31 * code + ((TrapTile) tile).getTrap().hashCode();
+				}
+				hash = mix(hash, code);
+			}
+		}
+		return hash;
+	}
+
+	private static long mix(long hash, int value) {
+		for (int shift = 0; shift < 32; shift += 8) {
+			hash ^= (value >>> shift) & 0xff;
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+
+	/**
+	 * fill an empty grid from the cache
+	 * @param grid
+	 * @param map from getMap(), supplies the shared tile of each class
+	 * @return false on a miss, the grid is left empty
+	 */
+	public boolean restoreGrid(GridMap grid, HashMap<Coordinate, MapTile> map) {
+		if (buffer == null || grid.getWidth() != width || grid.getHeight() != height) {
+			return false;
+		}
+		int cells = width * height;
+		ByteBuffer data = buffer.duplicate();
+		data.position(HEADER_BYTES);
+		int classCount = data.getInt();
+		if (classCount < 1 || classCount > GridMap.MAX_CLASSES) {
+			return false;
+		}
+		int[] cellsOfClasses = new int[classCount];
+		MapTile[] prototypes = new MapTile[classCount];
+		for (int tileClass = 1; tileClass < classCount; tileClass++) {
+			int cell = data.getInt();
+			if (cell < 0 || cell >= cells) {
+				return false;
+			}
+			cellsOfClasses[tileClass] = cell;
+			prototypes[tileClass] = map.get(new Coordinate(grid.getX(cell), grid.getY(cell)));
+			if (prototypes[tileClass] == null) {
+				return false;
+			}
+		}
+		byte[] restored = new byte[cells];
+		data.get(restored);
+		for (byte tileClass : restored) {
+			if (tileClass < 0 || tileClass >= classCount) {
+				return false;
+			}
+		}
+		grid.restore(restored, prototypes);
+		classes = restored;
+		classCells = cellsOfClasses;
+		return true;
+	}
+
+	/**
+	 * give the heuristic the tables saved for the untouched map
+	 * @param landmarks whose grid hasn't had any tile changed yet
+	 * @return false on a miss, or if the cache has no tables
+	 */
+	public boolean restoreLandmarks(LandmarkHeuristic landmarks) {
+		if (buffer == null) {
+			return false;
+		}
+		ByteBuffer data = buffer.duplicate();
+		data.position(landmarkOffset);
+		int count = data.getInt();
+		int cells = width * height;
+		if (count == 0 || data.remaining() < (long) count * 4 * (1 + 2 * cells)) {
+			return false;
+		}
+		int[] cellsOfLandmarks = new int[count];
+		data.asIntBuffer().get(cellsOfLandmarks);
+		data.position(data.position() + 4 * count);
+		for (int cell : cellsOfLandmarks) {
+			if (cell < 0 || cell >= cells) {
+				return false;
+			}
+		}
+		int[][] to = new int[count][cells];
+		int[][] from = new int[count][cells];
+		for (int k = 0; k < count; k++) {
+			data.asIntBuffer().get(to[k]);
+			data.position(data.position() + 4 * cells);
+			data.asIntBuffer().get(from[k]);
+			data.position(data.position() + 4 * cells);
+		}
+		landmarks.restore(cellsOfLandmarks, to, from);
+		return true;
+	}
+
+	/**
+	 * write the grid and landmark tables for the layout given to open()
+	 * @param grid as built from getMap(), before any tile was explored
+	 * @param landmarks built on that grid, null to save the grid only
+	 * @return true if the file was written
+	 */
+	public boolean save(GridMap grid, LandmarkHeuristic landmarks) {
+		classes = grid.getTileClasses().clone();
+		classCells = new int[grid.getClassCount()];
+		for (int tileClass = 1; tileClass < classCells.length; tileClass++) {
+			int cell = 0;
+			while (classes[cell] != tileClass) {
+				cell++;
+			}
+			classCells[tileClass] = cell;
+		}
+		return write(landmarks);
+	}
+
+	/**
+	 * write landmark tables next to the grid restored or saved earlier, which the map may have changed from since
+	 * @param landmarks built on the untouched map
+	 * @return true if the file was written, false if there is no grid to write them with
+	 */
+	public boolean saveLandmarks(LandmarkHeuristic landmarks) {
+		return classes != null && write(landmarks);
+	}
+
+	private boolean write(LandmarkHeuristic landmarks) {
+		int cells = width * height;
+		int classCount = classCells.length;
+		int[] landmarkCells = landmarks == null ? new int[0] : landmarks.getLandmarks();
+		long size = HEADER_BYTES + 4 + 4L * (classCount - 1) + cells + 4 + 4L * landmarkCells.length * (1 + 2 * cells);
+		ByteBuffer data = ByteBuffer.allocate((int) size);
+		data.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(hash).putInt(width).putInt(height);
+		data.putInt(classCount);
+		for (int tileClass = 1; tileClass < classCount; tileClass++) {
+			data.putInt(classCells[tileClass]);
+		}
+		data.put(classes);
+		data.putInt(landmarkCells.length);
+		for (int cell : landmarkCells) {
+			data.putInt(cell);
+		}
+		for (int k = 0; k < landmarkCells.length; k++) {
+			data.asIntBuffer().put(landmarks.getToTable(k));
+			data.position(data.position() + 4 * cells);
+			data.asIntBuffer().put(landmarks.getFromTable(k));
+			data.position(data.position() + 4 * cells);
+		}
+		data.flip();
+
+		// write next to the real file and move it into place, so a reader never sees half a file
+		File temporary = null;
+		try {
+			Files.createDirectories(directory.toPath());
+			temporary = File.createTempFile("map", ".tmp", directory);
+			try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.WRITE)) {
+				while (data.hasRemaining()) {
+					channel.write(data);
+				}
+			}
+			Files.move(temporary.toPath(), getFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
+			return true;
+		} catch (IOException e) {
+			return false;
+		} finally {
+			// only still there if writing or moving it failed
+			if (temporary != null && temporary.exists()) {
+				temporary.delete();
+			}
+		}
+	}
+
+	/**
+	 * @return true if open() found a file for the layout
+	 */
+	public boolean isHit() {
+		return buffer != null;
+	}
+
+	public long getHash() {
+		return hash;
+	}
+
+	public File getFile() {
+		return new File(directory, String.format("%016x.bin", hash));
+	}
+}
@@ -0,0 +1,12 @@
+package mycontroller;
+
+import tiles.MapTile;
+
+/**
+ * Notified by GameMap.updateMap for every cell whose tile turns out to be
+ * different from what getMap() reported, e.g. a road that is really a trap.
+ */
+public interface MapChangeListener {
+
+	void tileChanged(int x, int y, MapTile tile);
+}
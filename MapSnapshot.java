@@ -0,0 +1,183 @@
+package mycontroller;
+
+import tiles.MapTile;
+
+/**
+ * An immutable copy of GameMap's grid as it was at the end of one
+ * updateMap, safe to read from any thread while the map keeps changing.
+ *
+ * The map is cut into square chunks of CHUNK_SIZE cells a side. A new
+ * snapshot copies only the chunks updateMap touched since the last one and
+ * shares every other chunk with it, so publishing costs a few hundred
+ * bytes per tick rather than a copy of the whole map. Key positions, health
+ * traps and the frontier aren't part of it.
+ */
+public class MapSnapshot {
+	public static final int CHUNK_SIZE = 16;
+	private static final int CHUNK_CELLS = CHUNK_SIZE * CHUNK_SIZE;
+
+	private final int width;
+	private final int height;
+	private final int chunksY;
+	private final Chunk[] chunks;
+	private final MapTile[] prototypes; //class -> shared tile, as GridMap had them
+	private final int version;
+	private final int sequence;
+
+	private MapSnapshot(int width, int height, Chunk[] chunks, MapTile[] prototypes, int version, int sequence) {
+		this.width = width;
+		this.height = height;
+		this.chunksY = (height + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		this.chunks = chunks;
+		this.prototypes = prototypes;
+		this.version = version;
+		this.sequence = sequence;
+	}
+
+	/**
+	 * first snapshot of a grid, every chunk copied
+	 * @param grid
+	 * @param version GameMap's version
+	 * @return
+	 */
+	public static MapSnapshot of(GridMap grid, int version) {
+		int chunksX = (grid.getWidth() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		int chunksY = (grid.getHeight() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		Chunk[] chunks = new Chunk[chunksX * chunksY];
+		for (int chunk = 0; chunk < chunks.length; chunk++) {
+			chunks[chunk] = new Chunk(grid, chunk / chunksY, chunk % chunksY);
+		}
+		return new MapSnapshot(grid.getWidth(), grid.getHeight(), chunks, copyPrototypes(grid), version, 0);
+	}
+
+	/**
+	 * next snapshot of the same grid, sharing every chunk that isn't dirty with this one
+	 * @param grid
+	 * @param dirtyChunks chunk ids changed since this snapshot, true for each
+	 * @param version GameMap's version
+	 * @return
+	 */
+	public MapSnapshot withChanges(GridMap grid, boolean[] dirtyChunks, int version) {
+		Chunk[] next = chunks.clone();
+		for (int chunk = 0; chunk < next.length; chunk++) {
+			if (dirtyChunks[chunk]) {
+				next[chunk] = new Chunk(grid, chunk / chunksY, chunk % chunksY);
+			}
+		}
+		// classes are only ever added, so the old table still holds if none were
+		MapTile[] nextPrototypes = grid.getClassCount() == prototypes.length ? prototypes : copyPrototypes(grid);
+		return new MapSnapshot(width, height, next, nextPrototypes, version, sequence + 1);
+	}
+
+	private static MapTile[] copyPrototypes(GridMap grid) {
+		MapTile[] copy = new MapTile[grid.getClassCount()];
+		for (int tileClass = 1; tileClass < copy.length; tileClass++) {
+			copy[tileClass] = grid.getPrototype((byte) tileClass);
+		}
+		return copy;
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return id of the chunk holding the cell
+	 */
+	public int getChunkId(int x, int y) {
+		return (x / CHUNK_SIZE) * chunksY + y / CHUNK_SIZE;
+	}
+
+	public int getChunkCount() {
+		return chunks.length;
+	}
+
+	/**
+	 * @param other snapshot of the same map
+	 * @return number of chunks both snapshots hold the very same copy of
+	 */
+	public int countSharedChunks(MapSnapshot other) {
+		int shared = 0;
+		for (int chunk = 0; chunk < chunks.length && chunk < other.chunks.length; chunk++) {
+			if (chunks[chunk] == other.chunks[chunk]) {
+				shared++;
+			}
+		}
+		return shared;
+	}
+
+	public boolean isInside(int x, int y) {
+		return x >= 0 && x < width && y >= 0 && y < height;
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return shared tile of the cell's class, null if the cell is off the map or has no tile
+	 */
+	public MapTile getTile(int x, int y) {
+		return isInside(x, y) ? prototypes[chunks[getChunkId(x, y)].tileClasses[getIndex(x, y)]] : null;
+	}
+
+	public boolean isExplored(int x, int y) {
+		int index = getIndex(x, y);
+		return (chunks[getChunkId(x, y)].explored[index >>> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return key held by the cell, 0 if none
+	 */
+	public int getKeyValue(int x, int y) {
+		return chunks[getChunkId(x, y)].keyValues[getIndex(x, y)];
+	}
+
+	private static int getIndex(int x, int y) {
+		return (x % CHUNK_SIZE) * CHUNK_SIZE + y % CHUNK_SIZE;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return GameMap's version, tile changes seen, when the snapshot was taken
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return number of snapshots published before this one
+	 */
+	public int getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * One square of cells, never changed once built.
+	 */
+	private static final class Chunk {
+		private final byte[] tileClasses = new byte[CHUNK_CELLS];
+		private final byte[] keyValues = new byte[CHUNK_CELLS];
+		private final long[] explored = new long[CHUNK_CELLS / 64];
+
+		private Chunk(GridMap grid, int chunkX, int chunkY) {
+			int endX = Math.min(grid.getWidth(), (chunkX + 1) * CHUNK_SIZE);
+			int endY = Math.min(grid.getHeight(), (chunkY + 1) * CHUNK_SIZE);
+			for (int x = chunkX * CHUNK_SIZE; x < endX; x++) {
+				for (int y = chunkY * CHUNK_SIZE; y < endY; y++) {
+					int index = getIndex(x, y);
+					tileClasses[index] = grid.getTileClass(x, y);
+					keyValues[index] = (byte) grid.getKeyValue(x, y);
+					if (grid.isExplored(x, y)) {
+						explored[index >>> 6] |= 1L << index;
+					}
+				}
+			}
+		}
+	}
+}
@@ -1,11 +1,27 @@
 package mycontroller;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import controller.CarController;
+import mycontroller.AStarSearch.BidirectionalSearch;
+import mycontroller.AStarSearch.FrontierSearch;
+import mycontroller.AStarSearch.HealthConstrainedPlanner;
+import mycontroller.AStarSearch.HierarchicalPlanner;
+import mycontroller.AStarSearch.IncrementalPlanner;
+import mycontroller.AStarSearch.JumpPointSearch;
+import mycontroller.AStarSearch.LandmarkHeuristic;
+import mycontroller.AStarSearch.MultiTargetSearch;
+import mycontroller.AStarSearch.PathCache;
+import mycontroller.AStarSearch.PlannerService;
+import mycontroller.AStarSearch.ResumableSearch;
+import mycontroller.AStarSearch.SearchContext;
+import mycontroller.AStarSearch.SearchGrid;
+import mycontroller.AStarSearch.TurnAwarePlanner;
 import mycontroller.strategies.*;
 import tiles.MapTile;
 import utilities.Coordinate;
 import world.Car;
+import world.World;
 import world.WorldSpatial;
 
 public class MyAIController extends CarController {
@@ -20,6 +36,24 @@ public class MyAIController extends CarController {
 	private WorldSpatial.Direction previousState = null; // Keeps track of the previous state(orientation)
 	private boolean justChangedState = false; // Indicates the car just makes a turn (90 degree)
 	private GameMap latestGameMap; //GameMap keeps being updated as the car explores the map
+	private SearchContext searchContext; //Reused by every path search the strategies run
+	private PathCache pathCache = new PathCache(PathCache.DEFAULT_CAPACITY); //Paths already found by the ASTAR engine
+	private LandmarkHeuristic landmarkHeuristic = null; //Built the first time the ASTAR engine is used
+	private MapAnalysisCache mapAnalysisCache = new MapAnalysisCache(MapAnalysisCache.getDefaultDirectory());
+	private IncrementalPlanner incrementalPlanner; //Repairs goal paths as updateMap reveals tiles
+	private HierarchicalPlanner hierarchicalPlanner = null; //Built the first time the HIERARCHICAL engine is used
+	private JumpPointSearch jumpPointSearch = null; //Built the first time the JUMPPOINT engine is used
+	private BidirectionalSearch bidirectionalSearch = null; //Built the first time the BIDIRECTIONAL engine is used
+	private MultiTargetSearch multiTargetSearch = null; //Picks the nearest of several targets in one search
+	private HealthConstrainedPlanner healthConstrainedPlanner = null; //Built the first time a route through lava is planned
+	private ResumableSearch resumableSearch = null; //Built the first time the ANYTIME engine is used
+	private TurnAwarePlanner turnAwarePlanner = null; //Built the first time the TURNAWARE engine is used
+	private FrontierSearch frontierSearch = null; //Built the first time the EXPLOREFRONTIER strategy picks a target
+	private int searchExpansionsPerTick = DEFAULT_SEARCH_EXPANSIONS_PER_TICK; //ANYTIME budget for each update()
+	private long searchNanosPerTick = DEFAULT_SEARCH_NANOS_PER_TICK;
+	private PlannerService plannerService = null; //Background threads for the BACKGROUND engine
+	private FrameTimeHistogram frameTimes = new FrameTimeHistogram(); //How long each update() takes
+	private SearchEngines searchEngine = SearchEngines.INCREMENTAL; //Engine used by GoalCompletionStrategy
 
 	// Car Speed to move at
 	public final float MAX_CAR_SPEED = 3;
@@ -31,6 +65,10 @@ public class MyAIController extends CarController {
 	public final int DISTANCE_TO_TURN = 1; // THe car can only turn when the obstacle is 1 tile ahead
 	public final int DISTANCE_TO_SLOW_DOWN = getViewSquare();  //Slow down car when an obstacle is 4 tiles ahead
 
+	// Default work the ANYTIME engine may do in one frame, whichever runs out first
+	public static final int DEFAULT_SEARCH_EXPANSIONS_PER_TICK = 2000;
+	public static final long DEFAULT_SEARCH_NANOS_PER_TICK = 2000000;
+
 	// Offset used to differentiate between 0 and 360 degrees
 	private int EAST_THRESHOLD = 3;
 
@@ -40,12 +78,23 @@ public class MyAIController extends CarController {
 	private CarControllerStrategy.CarControllerActions actionAtTurningPoint = null; 
 
 	public enum Strategies {
-		FOLLOWLEFTWALL, FOLLOWRIGHTWALL, GOTHROUGHLAVA, HEALING
+		FOLLOWLEFTWALL, FOLLOWRIGHTWALL, GOTHROUGHLAVA, HEALING, EXPLOREFRONTIER
+	}
+
+	public enum SearchEngines {
+		ASTAR, INCREMENTAL, HIERARCHICAL, JUMPPOINT, BIDIRECTIONAL, DISTANCEFIELD, HEALTHCONSTRAINED, ANYTIME, BACKGROUND,
+		TURNAWARE
 	}
 
 	public MyAIController(Car car){
 		super(car);
-		latestGameMap = new GameMap(getMap(), getKey()-1);
+		HashMap<Coordinate, MapTile> map = getMap();
+		mapAnalysisCache.open(map, World.MAP_WIDTH, World.MAP_HEIGHT);
+		latestGameMap = new GameMap(map, getKey()-1, mapAnalysisCache);
+		searchContext = new SearchContext(World.MAP_WIDTH, World.MAP_HEIGHT);
+
+		incrementalPlanner = new IncrementalPlanner(createSearchGrid());
+		latestGameMap.addMapChangeListener(incrementalPlanner);
 
 		//default to following left wall when simulation starts 
 		strategyFactory = new StrategyFactory();
@@ -53,16 +102,29 @@ public class MyAIController extends CarController {
 				DISTANCE_TO_SLOW_DOWN, Strategies.FOLLOWLEFTWALL);
 	}
 
+	/**
+	 * explore with another strategy, e.g. EXPLOREFRONTIER instead of following walls
+	 * @param strategyName
+	 */
+	public void setExplorationStrategy(Strategies strategyName) {
+		carNavigationStrategy = strategyFactory.createCarStrategy(TILE_FOLLOWING_SENSITIVITY,
+				DISTANCE_TO_SLOW_DOWN, strategyName);
+	}
+
 	@Override
 	public void update(float delta) {
+		long frameStart = System.nanoTime();
 		// Gets what the car can see
 		HashMap<Coordinate, MapTile> currentView = getView();
 		currentPosition = updateCoordinate();
-		getLatestGameMap().updateMap(currentView);
+		getLatestGameMap().updateMap(currentView, currentPosition, getViewSquare());
 		checkStateChange();
 
+		// Wall followers need a wall to stick to first, strategies that plan their own route don't
+		boolean isExploringWalls = carNavigationStrategy instanceof PathExplorerStrategy;
+
 		// If you are not following a wall initially, find a wall to stick to!
-		if (!isFollowingWall) {
+		if (isExploringWalls && !isFollowingWall) {
 			if (getSpeed() < MAX_CAR_SPEED) {
 				applyForwardAcceleration();
 			}
@@ -107,6 +169,10 @@ public class MyAIController extends CarController {
 				applyLeftTurn(getOrientation(), delta);
 			}
 
+			else if (!isExploringWalls) {
+				carNavigationStrategy.decideAction(this);
+			}
+
 			else {
 				//Changes PathExplorerStrategy when the car tags along obstacles on the other side
 				if (((PathExplorerStrategy) carNavigationStrategy).changeStrategyNow()) {
@@ -126,6 +192,7 @@ public class MyAIController extends CarController {
 				((PathExplorerStrategy) carNavigationStrategy).decideAction(this);
 			}
 		}
+		frameTimes.record(System.nanoTime() - frameStart);
 	}
 
 	/**
@@ -353,6 +420,177 @@ public class MyAIController extends CarController {
 		this.latestGameMap = latestGameMap;
 	}
 
+	public SearchContext getSearchContext() {
+		return searchContext;
+	}
+
+	public PathCache getPathCache() {
+		return pathCache;
+	}
+
+	/**
+	 * Each planner keeps its own grid, as every grid applies the same map change independently
+	 * @return a grid of the latest map where only walls are avoided
+	 */
+	private SearchGrid createSearchGrid() {
+		ArrayList<MapTile> wallsToAvoid = new ArrayList<>();
+		wallsToAvoid.add(new MapTile(MapTile.Type.WALL));
+		return new SearchGrid(latestGameMap.getUpdatedMap(), wallsToAvoid, World.MAP_WIDTH, World.MAP_HEIGHT);
+	}
+
+	public IncrementalPlanner getIncrementalPlanner() {
+		return incrementalPlanner;
+	}
+
+	public HierarchicalPlanner getHierarchicalPlanner() {
+		if (hierarchicalPlanner == null) {
+			hierarchicalPlanner = new HierarchicalPlanner(createSearchGrid());
+			latestGameMap.addMapChangeListener(hierarchicalPlanner);
+		}
+		return hierarchicalPlanner;
+	}
+
+	public JumpPointSearch getJumpPointSearch() {
+		if (jumpPointSearch == null) {
+			SearchGrid grid = createSearchGrid();
+			latestGameMap.addMapChangeListener(grid);
+			jumpPointSearch = new JumpPointSearch(searchContext, grid);
+		}
+		return jumpPointSearch;
+	}
+
+	public BidirectionalSearch getBidirectionalSearch() {
+		if (bidirectionalSearch == null) {
+			SearchGrid grid = createSearchGrid();
+			latestGameMap.addMapChangeListener(grid);
+			//the backward half needs its own g/parent arrays
+			bidirectionalSearch = new BidirectionalSearch(searchContext,
+					new SearchContext(World.MAP_WIDTH, World.MAP_HEIGHT), grid);
+		}
+		return bidirectionalSearch;
+	}
+
+	/**
+	 * Landmark tables are rebuilt by the heuristic itself once enough tiles have changed
+	 * While no tile has changed yet the map is still getMap()'s, so the tables can come from the cache
+	 * @return ALT heuristic for the ASTAR engine
+	 */
+	public LandmarkHeuristic getLandmarkHeuristic() {
+		if (landmarkHeuristic == null) {
+			// the cache holds tables for the untouched map, so they are restored or built on that
+			// and the tiles revealed since are replayed afterwards
+			SearchGrid grid = createSearchGrid();
+			HashMap<Coordinate, MapTile> map = latestGameMap.getVersion() == 0 ? null : getMap();
+			ArrayList<Coordinate> changed = new ArrayList<>();
+			for (int x = 0; map != null && x < World.MAP_WIDTH; x++) {
+				for (int y = 0; y < World.MAP_HEIGHT; y++) {
+					if (latestGameMap.getCellVersion(x, y) > 0) {
+						Coordinate cell = new Coordinate(x, y);
+						changed.add(cell);
+						grid.updateCell(x, y, map.get(cell));
+					}
+				}
+			}
+			landmarkHeuristic = new LandmarkHeuristic(grid);
+			if (!mapAnalysisCache.restoreLandmarks(landmarkHeuristic)) {
+				landmarkHeuristic.rebuild();
+				mapAnalysisCache.saveLandmarks(landmarkHeuristic);
+			}
+			for (Coordinate cell : changed) {
+				landmarkHeuristic.tileChanged(cell.x, cell.y, latestGameMap.getTile(cell.x, cell.y));
+			}
+			latestGameMap.addMapChangeListener(landmarkHeuristic);
+		}
+		return landmarkHeuristic;
+	}
+
+	public MapAnalysisCache getMapAnalysisCache() {
+		return mapAnalysisCache;
+	}
+
+	public MultiTargetSearch getMultiTargetSearch() {
+		if (multiTargetSearch == null) {
+			SearchGrid grid = createSearchGrid();
+			latestGameMap.addMapChangeListener(grid);
+			multiTargetSearch = new MultiTargetSearch(searchContext, grid);
+		}
+		return multiTargetSearch;
+	}
+
+	public HealthConstrainedPlanner getHealthConstrainedPlanner() {
+		if (healthConstrainedPlanner == null) {
+			SearchGrid grid = createSearchGrid();
+			latestGameMap.addMapChangeListener(grid);
+			healthConstrainedPlanner = new HealthConstrainedPlanner(grid);
+		}
+		return healthConstrainedPlanner;
+	}
+
+	public TurnAwarePlanner getTurnAwarePlanner() {
+		if (turnAwarePlanner == null) {
+			SearchGrid grid = createSearchGrid();
+			latestGameMap.addMapChangeListener(grid);
+			turnAwarePlanner = new TurnAwarePlanner(grid);
+		}
+		return turnAwarePlanner;
+	}
+
+	public FrontierSearch getFrontierSearch() {
+		if (frontierSearch == null) {
+			SearchGrid grid = createSearchGrid();
+			latestGameMap.addMapChangeListener(grid);
+			frontierSearch = new FrontierSearch(searchContext, grid);
+		}
+		return frontierSearch;
+	}
+
+	public ResumableSearch getResumableSearch() {
+		if (resumableSearch == null) {
+			SearchGrid grid = createSearchGrid();
+			latestGameMap.addMapChangeListener(grid);
+			//the search is paused between ticks, so it can't share searchContext with the other engines
+			resumableSearch = new ResumableSearch(new SearchContext(World.MAP_WIDTH, World.MAP_HEIGHT), grid);
+		}
+		return resumableSearch;
+	}
+
+	public int getSearchExpansionsPerTick() {
+		return searchExpansionsPerTick;
+	}
+
+	public long getSearchNanosPerTick() {
+		return searchNanosPerTick;
+	}
+
+	/**
+	 * set how much of a path search the ANYTIME engine may run in one update()
+	 * @param expansions
+	 * @param nanos
+	 */
+	public void setSearchBudgetPerTick(int expansions, long nanos) {
+		this.searchExpansionsPerTick = expansions;
+		this.searchNanosPerTick = nanos;
+	}
+
+	public PlannerService getPlannerService() {
+		if (plannerService == null) {
+			plannerService = new PlannerService(PlannerService.DEFAULT_THREADS);
+		}
+		return plannerService;
+	}
+
+	public FrameTimeHistogram getFrameTimes() {
+		return frameTimes;
+	}
+
+	public SearchEngines getSearchEngine() {
+		return searchEngine;
+	}
+
+	public void setSearchEngine(SearchEngines searchEngine) {
+		this.searchEngine = searchEngine;
+	}
+
 	public CarControllerStrategy.CarControllerActions getActionAtTurningPoint() {
 		return actionAtTurningPoint;
 	}
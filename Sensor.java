@@ -195,13 +195,16 @@ public class Sensor {
 		else {
 			boolean istile1Obstacle = false;
 			boolean istile2Obstacle = false;
+			MapTile tile1 = currentView.get(adjacentTile1);
+			MapTile tile2 = currentView.get(adjacentTile2);
 
+			//An obstacle at the edge of the view has neighbours out of sight, those aren't known to be obstacles
 			for (MapTile tile : tilesToCheck) {
-				if (TilesChecker.checkTileSameType(currentView.get(adjacentTile1), tile)) {
+				if (tile1 != null && TilesChecker.checkTileSameType(tile1, tile)) {
 					istile1Obstacle = true;
 				}
 
-				if (TilesChecker.checkTileSameType(currentView.get(adjacentTile2), tile)) {
+				if (tile2 != null && TilesChecker.checkTileSameType(tile2, tile)) {
 					istile2Obstacle = true;
 				}
 			}
@@ -1,41 +1,111 @@
 package mycontroller.strategies;
 
 import mycontroller.*;
+import mycontroller.AStarSearch.MultiTargetSearch;
 import mycontroller.AStarSearch.Node;
 import tiles.MapTile;
 import utilities.Coordinate;
 
+import java.util.List;
+
 public class FindHealthTrapStrategy extends GoalCompletionStrategy {
 
+    // Below this much health a fast route to a trap matters more than the shortest one
+    public static final int LOW_HEALTH = 30;
+    public static final double LOW_HEALTH_SEARCH_WEIGHT = 2.0;
+    // health traps nearest by Manhattan distance that are ranked by path cost
+    public static final int HEALTH_CANDIDATES = 4;
+
     private Node nearestHealthNode;
+    private boolean enginePlan; //path came from the search engine rather than the multi-target search
 
     public FindHealthTrapStrategy(MyAIController c) {
-        nearestHealthNode = findNearestHealthNode(c);
-        startAStarSearch(nearestHealthNode, c);
-        currentOrientation = c.getOrientation();
-        routeInterpretor(path, currentOrientation);
+        planToHealthTrap(c);
+    }
+
+    /**
+     * one search picks the nearest health trap and finds the way there, weighted while health is low
+     * @param carController
+     */
+    private void planToHealthTrap(MyAIController carController) {
+        searchWeight = weightFor(carController);
+        MultiTargetSearch.Result nearest = findNearestHealthTrap(carController);
+        if (nearest != null) {
+            nearestHealthNode = nearest.getPath().get(nearest.getPath().size() - 1);
+            targetNode = nearestHealthNode;
+            path = nearest.getPath();
+            enginePlan = false;
+        } else {
+            nearestHealthNode = findClosestHealthNode(carController);
+            startAStarSearch(nearestHealthNode, carController);
+            enginePlan = true;
+        }
+        compilePlan(carController);
+    }
+
+    /**
+     * search with a weight while health is low, the path may cost up to the weight times the optimum
+     * @param carController
+     * @return
+     */
+    private double weightFor(MyAIController carController) {
+        return carController.getHealth() < LOW_HEALTH ? LOW_HEALTH_SEARCH_WEIGHT : 1.0;
     }
 
     /**
-     * find the nearest health node by displacement
+     * find the health trap that is nearest by path cost among the few nearest by distance,
+     * or among all of them if none of those can be reached
+     * @param carController
+     * @return the nearest health trap and the path to it, null if none can be reached
+     */
+    private MultiTargetSearch.Result findNearestHealthTrap(MyAIController carController) {
+        Coordinate position = carController.getCurrentPosition();
+        GameMap gameMap = carController.getLatestGameMap();
+        MultiTargetSearch search = carController.getMultiTargetSearch();
+        List<Coordinate> candidates = gameMap.getNearestHealthTiles(position, HEALTH_CANDIDATES);
+        MultiTargetSearch.Result nearest = search.findNearest(position.x, position.y, candidates, searchWeight);
+        if (nearest == null && candidates.size() == HEALTH_CANDIDATES) {
+            nearest = search.findNearest(position.x, position.y, gameMap.getHealthTiles(), searchWeight);
+        }
+        return nearest;
+    }
+
+    /**
+     * the health tile nearest the car by distance
      * @param carController
      * @return
      */
-    private Node findNearestHealthNode(MyAIController carController) {
+    private Node findClosestHealthNode(MyAIController carController) {
         GameMap gameMap = carController.getLatestGameMap();
-        Coordinate healthPosition = gameMap.getNearestHealthTile();
-        MapTile nearestHealthTile = gameMap.getUpdatedMap().get(healthPosition).getTile();
+        Coordinate healthPosition = gameMap.getNearestHealthTile(carController.getCurrentPosition());
+        MapTile nearestHealthTile = gameMap.getTile(healthPosition.x, healthPosition.y);
 
         nearestHealthNode = new Node(healthPosition.x, healthPosition.y, nearestHealthTile);
         return nearestHealthNode;
     }
 
+    @Override
+    protected void replanFromCar(MyAIController carController) {
+        if (enginePlan) {
+            super.replanFromCar(carController);
+        } else {
+            planToHealthTrap(carController);
+        }
+    }
+
     @Override
     public void decideAction(MyAIController carController) {
-        Coordinate currentPosition = new Coordinate(carController.getCurrentPosition().x,carController.getCurrentPosition().y);
-        MapTile carCurrentPositionTile = carController.getLatestGameMap().getUpdatedMap().get(currentPosition).getTile();
+        Coordinate currentPosition = carController.getCurrentPosition();
+        MapTile carCurrentPositionTile = carController.getLatestGameMap().getTile(currentPosition.x,
+                currentPosition.y);
         carCurrentNode = new Node(currentPosition.x, currentPosition.y, carCurrentPositionTile);
 
+        // the multi-target search keeps no state to repair, so search again when its path goes bad
+        if (weightFor(carController) != searchWeight || isChangedOnPath(carController.getLatestGameMap())) {
+            planToHealthTrap(carController);
+        } else if (enginePlan) {
+            repairPath(carController);
+        }
         CarControllerActions nextState = determineState(carController);
         StrategyControllerRelay.getInstance().changeState(carController, nextState);
     }
@@ -11,24 +11,24 @@ public class FindKeyStrategy extends GoalCompletionStrategy {
 	private Node keyNode;
 
 	public FindKeyStrategy(MyAIController c) {
+		c.getLatestGameMap().planKeyOrder(c.getCurrentPosition());
         keyNode = findNextKey(c);
 		startAStarSearch(keyNode, c);
-		currentOrientation = c.getOrientation();
-		routeInterpretor(path, currentOrientation);
+		compilePlan(c);
 	}
 	
 	@Override
 	public void decideAction(MyAIController carController) {
         GameMap gameMap = carController.getLatestGameMap();
-        Coordinate nextKeyCoordinate = gameMap.getNextKeyCoordinate();
+        Coordinate nextKeyCoordinate = gameMap.getCurrentKeyCoordinate();
 
         if (carController.getCurrentPosition().x == nextKeyCoordinate.x && carController.getCurrentPosition().y == nextKeyCoordinate.y) {
             keyNode = findNextKey(carController);
             startAStarSearch(keyNode, carController);
-            currentOrientation = carController.getOrientation();
-            routeInterpretor(path, currentOrientation);
+            compilePlan(carController);
         }
         else {
+            repairPath(carController);
             CarControllerActions nextState = determineState(carController);
             StrategyControllerRelay.getInstance().changeState(carController, nextState);
         }
@@ -42,7 +42,7 @@ public class FindKeyStrategy extends GoalCompletionStrategy {
     private Node findNextKey(MyAIController carController) {
 		GameMap gameMap = carController.getLatestGameMap();
 		Coordinate keyPosition = gameMap.getNextKeyCoordinate();
-		MapTile keyTile = gameMap.getUpdatedMap().get(keyPosition).getTile();
+		MapTile keyTile = gameMap.getTile(keyPosition.x, keyPosition.y);
 		keyNode = new Node(keyPosition.x, keyPosition.y, keyTile);
 		return keyNode;
 	}
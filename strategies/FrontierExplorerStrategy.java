@@ -0,0 +1,84 @@
+package mycontroller.strategies;
+
+import mycontroller.FrontierSet;
+import mycontroller.GameMap;
+import mycontroller.MyAIController;
+import mycontroller.StrategyControllerRelay;
+import mycontroller.AStarSearch.MultiTargetSearch;
+import utilities.Coordinate;
+
+/**
+ * Explores by driving to the part of GameMap's frontier that promises the
+ * most unseen cells for the distance, instead of following walls.
+ *
+ * A new target is picked once the current one is no longer on the frontier,
+ * which happens as soon as the view has revealed what was next to it, or
+ * once the car has left its plan or a tile on the plan has turned out to be
+ * something else. Once the frontier is empty the whole map has been seen.
+ */
+public class FrontierExplorerStrategy extends GoalCompletionStrategy {
+
+    private static final int NO_TARGET = -1;
+
+    private int targetCell = NO_TARGET;
+    private int retargets = 0;
+    private int unreachableFrontierSize = -1; //Frontier size when no part of it could be reached
+
+    @Override
+    public void decideAction(MyAIController carController) {
+        if (needsNewTarget(carController)) {
+            retarget(carController);
+        }
+        CarControllerActions nextState = determineState(carController);
+        StrategyControllerRelay.getInstance().changeState(carController, nextState);
+    }
+
+    private boolean needsNewTarget(MyAIController carController) {
+        GameMap gameMap = carController.getLatestGameMap();
+        Coordinate position = carController.getCurrentPosition();
+        if (targetCell == NO_TARGET && gameMap.getFrontierSize() == unreachableFrontierSize
+                && gameMap.getChangedCellCount() == 0) {
+            return false;
+        }
+        return targetCell == NO_TARGET || !gameMap.getFrontier().contains(targetCell) || plan.isFinished()
+                || !plan.advance(position.x, position.y) || isChangedOnPath(gameMap);
+    }
+
+    /**
+     * plan to the best frontier cluster from where the car is
+     * @param carController
+     */
+    private void retarget(MyAIController carController) {
+        GameMap gameMap = carController.getLatestGameMap();
+        FrontierSet frontier = gameMap.getFrontier();
+        Coordinate position = carController.getCurrentPosition();
+        MultiTargetSearch.Result best = frontier.isEmpty() ? null
+                : carController.getFrontierSearch().findBestFrontier(position.x, position.y, gameMap);
+        retargets++;
+        if (best == null) {
+            // nothing left that can be reached, determineState() slows the car down
+            targetCell = NO_TARGET;
+            unreachableFrontierSize = frontier.size();
+            path = null;
+        } else {
+            targetCell = best.getTarget().x * carController.getFrontierSearch().getGrid().getHeight()
+                    + best.getTarget().y;
+            path = best.getPath();
+        }
+        compilePlan(carController);
+    }
+
+    /**
+     * @return true once no frontier cell is left to drive to
+     */
+    public boolean isExplorationComplete() {
+        return retargets > 0 && targetCell == NO_TARGET;
+    }
+
+    /**
+     * @return number of times a new target was picked
+     */
+    public int getRetargets() {
+        return retargets;
+    }
+}
@@ -1,7 +1,10 @@
 package mycontroller.strategies;
 
+import mycontroller.GameMap;
 import mycontroller.MyAIController;
 import mycontroller.StrategyControllerRelay;
+import mycontroller.AStarSearch.MotionPlan;
+import mycontroller.AStarSearch.Node;
 import tiles.LavaTrap;
 import tiles.MapTile;
 import utilities.Coordinate;
@@ -11,6 +14,7 @@ import world.WorldSpatial.Direction;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 
 /**
  * Group 39 Example of Composite Pattern regarding this particular navigation
@@ -22,6 +26,9 @@ public class GoThroughLavaStrategy extends PathExplorerStrategy {
 
 	private PathExplorerStrategy followLeftWallStrategy;
 	private PathExplorerStrategy followRightWallStrategy;
+	private MotionPlan lavaRoute = null; //Fastest route the car survives, replanned whenever the car moves a tile
+	private Coordinate routeStart = null;
+	private Coordinate routeTarget = null;
 
 	public GoThroughLavaStrategy(StrategyFactory s, int tileFollowingSensitivity, int distToSlowDown) {
 		followLeftWallStrategy = (PathExplorerStrategy) s.createCarStrategy(tileFollowingSensitivity, distToSlowDown,
@@ -33,15 +40,74 @@ public class GoThroughLavaStrategy extends PathExplorerStrategy {
 		tilesToAvoid.add(new LavaTrap());
 	}
 
+	/**
+	 * Drive along the fastest route to the current key (or the exit) that the car's health survives,
+	 * going through lava where it is quicker. Falls back to following the left wall if there is none.
+	 */
 	public void decideAction(MyAIController carController) {
+		Coordinate position = carController.getCurrentPosition();
+		Coordinate target = findTarget(carController);
+		if (target == null) {
+			followLeftWallStrategy.decideAction(carController);
+			return;
+		}
+		if (lavaRoute == null || !position.equals(routeStart) || !target.equals(routeTarget)) {
+			lavaRoute = MotionPlan.compile(carController.getHealthConstrainedPlanner().findPath(position.x,
+					position.y, (int) carController.getHealth(), target.x, target.y));
+			lavaRoute.setSpeedProfile(carController.MAX_CAR_SPEED, carController.MAX_TURNING_SPEED,
+					carController.MIN_CORNER_SPEED, carController.DISTANCE_TO_SLOW_DOWN);
+			routeStart = position;
+			routeTarget = target;
+		}
+		if (lavaRoute.isFinished()) {
+			followLeftWallStrategy.decideAction(carController);
+			return;
+		}
 
-		CarControllerStrategy.CarControllerActions nextState = null;
+		CarControllerStrategy.CarControllerActions nextState = decideRouteAction(lavaRoute, carController);
 
 		// New action is relayed by the StrategyControllerRelay singleton to
 		// MyAIController
 		StrategyControllerRelay.getInstance().changeState(carController, nextState);
 	}
 
+	/**
+	 * the key being looked for, otherwise the nearest finish tile
+	 */
+	private Coordinate findTarget(MyAIController carController) {
+		GameMap gameMap = carController.getLatestGameMap();
+		if (gameMap.getCurrentKeyCoordinate() != null) {
+			return gameMap.getCurrentKeyCoordinate();
+		}
+		Coordinate position = carController.getCurrentPosition();
+		List<Node> exitPath = gameMap.getExitField().getPath(position.x, position.y);
+		if (exitPath.isEmpty()) {
+			return null;
+		}
+		Node exit = exitPath.get(exitPath.size() - 1);
+		return new Coordinate(exit.getX(), exit.getY());
+	}
+
+	/**
+	 * turn when the route turns, otherwise keep to its speed profile
+	 * @param route
+	 * @param carController
+	 * @return
+	 */
+	private CarControllerActions decideRouteAction(MotionPlan route, MyAIController carController) {
+		WorldSpatial.RelativeDirection turningDirection = MotionPlan.getTurn(carController.getOrientation(),
+				route.getHeading());
+		if (turningDirection != null) {
+			return decideTurning(0, turningDirection, 0, carController.DISTANCE_TO_SLOW_DOWN);
+		}
+		float targetSpeed = route.getTargetSpeed();
+		if (carController.getSpeed() <= targetSpeed) {
+			return CarControllerActions.ACCELERATE;
+		}
+		return targetSpeed >= carController.MAX_TURNING_SPEED ? CarControllerActions.SLOWDOWN
+				: CarControllerActions.REVERSE;
+	}
+
 	@Override
 	public boolean isDeadEnd(WorldSpatial.Direction orientation, HashMap<Coordinate, MapTile> currentView,
 			Coordinate currentPosition, ArrayList<MapTile> tilesToAvoid) {
@@ -1,183 +1,346 @@
 package mycontroller.strategies;
 
 import mycontroller.AStarSearch.AStarSearch;
+import mycontroller.AStarSearch.IncrementalPlanner;
+import mycontroller.AStarSearch.MotionPlan;
+import mycontroller.AStarSearch.PathCache;
+import mycontroller.AStarSearch.PlannerService;
+import mycontroller.AStarSearch.ResumableSearch;
+import mycontroller.AStarSearch.SearchContext;
+import mycontroller.AStarSearch.TurnAwarePlanner;
+import mycontroller.GameMap;
 import mycontroller.HashMapTile;
+import mycontroller.MapSnapshot;
 import mycontroller.MyAIController;
 import mycontroller.AStarSearch.Node;
 import tiles.MapTile;
 import utilities.Coordinate;
-import world.World;
 import world.WorldSpatial;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 public abstract class GoalCompletionStrategy implements CarControllerStrategy {
 
-    protected ArrayList<MapTile> tilesToAvoid;
+    protected ArrayList<MapTile> tilesToAvoid = new ArrayList<>(Arrays.asList(new MapTile(MapTile.Type.WALL)));
     protected Node carCurrentNode;
-    protected WorldSpatial.Direction currentOrientation;
+    protected Node targetNode;
+    protected PlannerService.PlanHandle pendingPlan; //BACKGROUND search still running, polled by repairPath()
+    private int pendingVersion; //GameMap's version when pendingPlan was submitted
+    protected double searchWeight = 1.0; //Above 1 the ASTAR engine trades path cost for speed, see AStarSearch.setWeight()
     protected List<Node> path;
-    protected List<GoalCompletionStrategy.Movement> movement;
+    protected MotionPlan plan = MotionPlan.compile(null); //path compiled into straight runs, followed by determineState()
+    private List<Node> plannedPath = null; //path the plan was made for, the TURNAWARE engine plans both at once
 
     public abstract void decideAction(MyAIController carController);
-    
-    public enum Movement {STRAIGHT, LEFT, RIGHT}
 
     /**
-     * creating a star class and find the path here
+     * find the path to the target with the search engine selected on the controller
+     * A* reuses the controller's SearchContext and PathCache, the planners keep their own state between calls
+     * DISTANCEFIELD follows GameMap's field towards the target, built once and repaired as tiles are revealed
+     * HEALTHCONSTRAINED may cross lava, as long as the car's current health lasts
+     * ANYTIME returns the best partial path it found within the controller's per-tick budget
+     * BACKGROUND returns no path yet, the search runs on the controller's PlannerService
+     * TURNAWARE pays for turns from the car's orientation and builds the motion plan along with the path
      * @param targetNode
      * @param carController
      */
     public void startAStarSearch(Node targetNode, MyAIController carController) {
-        HashMap<Coordinate, HashMapTile> updateMap = carController.getLatestGameMap().getUpdatedMap();
+        this.targetNode = targetNode;
         int carX = carController.getCurrentPosition().x;
         int carY = carController.getCurrentPosition().y;
-        carCurrentNode = new Node(carX, carY, updateMap.get(new Coordinate(carX, carY)).getTile());
-        AStarSearch aStar = new AStarSearch(World.MAP_WIDTH, World.MAP_HEIGHT, carCurrentNode, targetNode, updateMap,
-                tilesToAvoid);
-        path = aStar.findPath();
+
+        switch (carController.getSearchEngine()) {
+            case INCREMENTAL:
+                IncrementalPlanner planner = carController.getIncrementalPlanner();
+                planner.setGoal(targetNode.getX(), targetNode.getY());
+                path = planner.findPath(carX, carY);
+                break;
+            case HIERARCHICAL:
+                path = carController.getHierarchicalPlanner().findPath(carX, carY, targetNode.getX(),
+                        targetNode.getY());
+                break;
+            case JUMPPOINT:
+                path = carController.getJumpPointSearch().findPath(carX, carY, targetNode.getX(), targetNode.getY());
+                break;
+            case BIDIRECTIONAL:
+                path = carController.getBidirectionalSearch().findPath(carX, carY, targetNode.getX(),
+                        targetNode.getY());
+                break;
+            case DISTANCEFIELD:
+                path = carController.getLatestGameMap().getDistanceField(targetNode.getX(), targetNode.getY())
+                        .getPath(carX, carY);
+                break;
+            case HEALTHCONSTRAINED:
+                path = carController.getHealthConstrainedPlanner().findPath(carX, carY,
+                        (int) carController.getHealth(), targetNode.getX(), targetNode.getY());
+                break;
+            case TURNAWARE:
+                TurnAwarePlanner turnAwarePlanner = carController.getTurnAwarePlanner();
+                plan = turnAwarePlanner.plan(carX, carY, carController.getOrientation(), targetNode.getX(),
+                        targetNode.getY());
+                path = turnAwarePlanner.getPath();
+                plannedPath = path;
+                break;
+            case ANYTIME:
+                // only this tick's share of the search runs now, repairPath() carries on with it
+                ResumableSearch search = carController.getResumableSearch();
+                search.start(carX, carY, targetNode.getX(), targetNode.getY());
+                search.resume(carController.getSearchExpansionsPerTick(), carController.getSearchNanosPerTick());
+                path = search.getBestPartialPathFrom(carX, carY);
+                break;
+            case BACKGROUND:
+                // supersedes any plan still running, the car slows down until repairPath() picks the result up
+                MapSnapshot snapshot = carController.getLatestGameMap().getSnapshot();
+                pendingVersion = snapshot.getVersion();
+                pendingPlan = carController.getPlannerService().submit(snapshot, tilesToAvoid, carX, carY,
+                        targetNode.getX(), targetNode.getY());
+                path = new ArrayList<>();
+                break;
+            case ASTAR:
+            default:
+                GameMap gameMap = carController.getLatestGameMap();
+                PathCache pathCache = carController.getPathCache();
+                Map<Coordinate, HashMapTile> updateMap = gameMap.getUpdatedMap();
+                SearchContext searchContext = carController.getSearchContext();
+                // reset before the cache lookup, so a cached path never starts from the previous path's node
+                carCurrentNode = new Node(carX, carY, searchContext.lookup(updateMap, carX, carY).getTile());
+                // only exact paths are cached, a weighted one must not be handed to an exact query later
+                boolean exact = searchWeight == 1.0;
+                path = exact ? pathCache.get(carX, carY, targetNode.getX(), targetNode.getY(), tilesToAvoid, gameMap)
+                        : null;
+                if (path == null) {
+                    AStarSearch aStar = new AStarSearch(searchContext, carCurrentNode, targetNode, updateMap,
+                            tilesToAvoid);
+                    // the landmark tables only avoid walls, like the default tilesToAvoid
+                    if (tilesToAvoid.size() == 1 && tilesToAvoid.get(0).isType(MapTile.Type.WALL)) {
+                        aStar.setLandmarkHeuristic(carController.getLandmarkHeuristic());
+                    }
+                    aStar.setWeight(searchWeight);
+                    path = aStar.findPath();
+                    if (exact) {
+                        pathCache.put(carX, carY, targetNode.getX(), targetNode.getY(), tilesToAvoid, gameMap, path);
+                    }
+                }
+                break;
+        }
     }
 
     /**
-     * interprets the path as it would be a list of nodes,
-     * return a list of movements for the car to follow
-     * @param path
-     * @param orientation
+     * re-route if updateMap changed tiles that matter for the current path
+     * the incremental planner only repairs the affected region, the hierarchical one its affected clusters
+     * an unaffected ANYTIME search carries on with this tick's share instead
+     * @param carController
+     * @return true if the plan was replaced
      */
-    public void routeInterpretor(List<Node> path, WorldSpatial.Direction orientation) {
-        while (path.size() > 1) {
-            Node startPosition = path.get(0);
-            Node nextPosition = path.get(1);
-            movement.add(checkNextMove(startPosition, nextPosition));
-            path.remove(0);
+    public boolean repairPath(MyAIController carController) {
+        if (targetNode == null) {
+            return false;
+        }
+        boolean affected = isPathAffected(carController);
+        if (carController.getSearchEngine() == MyAIController.SearchEngines.ANYTIME && !affected) {
+            return resumeSearch(carController);
         }
+        if (carController.getSearchEngine() == MyAIController.SearchEngines.BACKGROUND && !affected) {
+            return pollPlan(carController);
+        }
+        if (!affected) {
+            return false;
+        }
+        startAStarSearch(targetNode, carController);
+        compilePlan(carController);
+        return true;
     }
 
     /**
-     * based on the orientation, spit out the next movement for the car
-     * @param startPosition
-     * @param nextPosition
-     * @return
+     * plan again from the car's cell once it has left the plan
+     * ANYTIME joins the car onto the best route found so far rather than starting its search over
+     * @param carController
      */
-    public GoalCompletionStrategy.Movement checkNextMove(Node startPosition, Node nextPosition) {
-        int xChanges = startPosition.getX() - nextPosition.getX();
-        int yChanges = startPosition.getY() - nextPosition.getY();
-        switch (currentOrientation) {
-            case SOUTH:
-                if (xChanges < 0) {
-                    // turn right
-                    currentOrientation = WorldSpatial.Direction.WEST;
-                    return GoalCompletionStrategy.Movement.RIGHT;
-                } else if (xChanges > 0) {
-                    // turnleft
-                    currentOrientation = WorldSpatial.Direction.EAST;
-                    return GoalCompletionStrategy.Movement.LEFT;
-                } else {
-                    // straight
-                    return GoalCompletionStrategy.Movement.STRAIGHT;
-                }
-            case NORTH:
-                if (xChanges < 0) {
-                    // turn left
-                    currentOrientation = WorldSpatial.Direction.WEST;
-                    return GoalCompletionStrategy.Movement.LEFT;
-                } else if (xChanges > 0) {
-                    // turnright
-                    currentOrientation = WorldSpatial.Direction.EAST;
-                    return GoalCompletionStrategy.Movement.RIGHT;
-                } else {
-                    // straight
-                    return GoalCompletionStrategy.Movement.STRAIGHT;
-                }
-            case EAST:
-                if (yChanges < 0) {
-                    // left
-                    currentOrientation = WorldSpatial.Direction.SOUTH;
-                    return GoalCompletionStrategy.Movement.RIGHT;
-                } else if (yChanges > 0) {
-                    // right
-                    currentOrientation = WorldSpatial.Direction.NORTH;
-                    return GoalCompletionStrategy.Movement.LEFT;
-                } else {
-                    // straight
-                    return GoalCompletionStrategy.Movement.STRAIGHT;
-                }
-            case WEST:
-                if (yChanges < 0) {
-                    // left
-                    currentOrientation = WorldSpatial.Direction.SOUTH;
-                    return GoalCompletionStrategy.Movement.LEFT;
-                } else if (yChanges > 0) {
-                    // right
-                    currentOrientation = WorldSpatial.Direction.NORTH;
-                    return GoalCompletionStrategy.Movement.RIGHT;
-                } else {
-                    // straight
-                    return GoalCompletionStrategy.Movement.STRAIGHT;
-                }
+    protected void replanFromCar(MyAIController carController) {
+        if (targetNode == null) {
+            return;
         }
-        return null;
+        if (carController.getSearchEngine() == MyAIController.SearchEngines.ANYTIME) {
+            Coordinate carPosition = carController.getCurrentPosition();
+            path = carController.getResumableSearch().getBestPartialPathFrom(carPosition.x, carPosition.y);
+        } else {
+            startAStarSearch(targetNode, carController);
+        }
+        compilePlan(carController);
     }
 
-    public ArrayList<MapTile> getTilesToAvoid() {
-        return tilesToAvoid;
+    /**
+     * run this tick's share of an unfinished ANYTIME search and follow the best route it has found so far
+     * the car is joined onto the route from wherever the last one took it, rather than the search starting over
+     * @param carController
+     * @return true if the plan was replaced
+     */
+    private boolean resumeSearch(MyAIController carController) {
+        ResumableSearch search = carController.getResumableSearch();
+        if (search.isComplete()) {
+            return false;
+        }
+        search.resume(carController.getSearchExpansionsPerTick(), carController.getSearchNanosPerTick());
+        Coordinate carPosition = carController.getCurrentPosition();
+        path = search.getBestPartialPathFrom(carPosition.x, carPosition.y);
+        compilePlan(carController);
+        return true;
     }
 
     /**
-     * by referring to the movement list, change the state of the carcontroller
+     * pick up the BACKGROUND plan once its search has finished
+     * a plan that crosses a tile changed since it was submitted was searched on a stale map and is submitted again
      * @param carController
-     * @return
+     * @return true if the plan was replaced
      */
-    public CarControllerActions determineState(MyAIController carController) {
-        CarControllerActions nextState;
-        int distUntilTurn = getDistUntilNextTurn(carController.DISTANCE_TO_SLOW_DOWN);
+    private boolean pollPlan(MyAIController carController) {
+        if (pendingPlan == null || !pendingPlan.isDone()) {
+            return false;
+        }
+        List<Node> fullPath = pendingPlan.getPath();
+        pendingPlan = null;
+        if (fullPath == null) {
+            return false;
+        }
+        GameMap gameMap = carController.getLatestGameMap();
+        for (Node node : fullPath) {
+            if (gameMap.getCellVersion(node.getX(), node.getY()) > pendingVersion) {
+                startAStarSearch(targetNode, carController);
+                compilePlan(carController);
+                return true;
+            }
+        }
+        followFromCar(fullPath, carController);
+        return true;
+    }
 
-        // If the car is to immediately turn, decide which way to turn
-        if (movement.get(0) == Movement.LEFT || movement.get(0) == Movement.RIGHT) {
-            Movement nextMovement = movement.remove(0);
-            switch (nextMovement) {
-                case LEFT:
-                    nextState = CarControllerActions.ISTURNINGLEFT;
-                    break;
-                case RIGHT:
-                    nextState = CarControllerActions.ISTURNINGRIGHT;
-                    break;
-                default:
-                    nextState = CarControllerActions.ACCELERATE;
+    /**
+     * follow a path that was searched from where the car used to be, starting at the car's cell on it,
+     * or search again if the car has left it
+     * @param fullPath
+     * @param carController
+     */
+    private void followFromCar(List<Node> fullPath, MyAIController carController) {
+        Coordinate carPosition = carController.getCurrentPosition();
+        int carIndex = -1;
+        for (int i = 0; i < fullPath.size(); i++) {
+            if (fullPath.get(i).getX() == carPosition.x && fullPath.get(i).getY() == carPosition.y) {
+                carIndex = i;
+                break;
             }
         }
-        //Prepare the car to turn
-        else if (distUntilTurn <= carController.DISTANCE_TO_SLOW_DOWN) {
-            nextState = CarControllerActions.SLOWDOWN;
+        if (carIndex >= 0) {
+            path = new ArrayList<>(fullPath.subList(carIndex, fullPath.size()));
+        } else if (!fullPath.isEmpty()) {
+            startAStarSearch(targetNode, carController);
+        } else {
+            path = fullPath;
         }
+        compilePlan(carController);
+    }
 
-        else {
-            nextState = CarControllerActions.ACCELERATE;
+    private boolean isPathAffected(MyAIController carController) {
+        switch (carController.getSearchEngine()) {
+            case INCREMENTAL:
+                return carController.getIncrementalPlanner().isPathAffected();
+            case HIERARCHICAL:
+                return carController.getHierarchicalPlanner().isPathAffected();
+            case ANYTIME:
+                return isAnytimeSearchAffected(carController);
+            case BACKGROUND:
+                // a plan still being searched is checked once it arrives, see pollPlan()
+                return pendingPlan == null && isChangedOnPath(carController.getLatestGameMap());
+            default:
+                // plain A* keeps no state to tell whether the map change matters
+                return false;
         }
-        return nextState;
     }
 
     /**
-     * check when is the next turning (LEFT/RIGHT)
-     * if it is more than 4 movements away, return 4
-     * @param distToSlowDown (<= 4)
+     * a tile changed by the last updateMap matters if the route being followed crosses it,
+     * or if it leaves the paused search's state wrong
+     * @param carController
      * @return
      */
-    public int getDistUntilNextTurn(int distToSlowDown) {
-        int i;
-        for (i = 0; i < movement.size(); i++) {
-            int j = i+1;
-            if (j < movement.size()) {
-                if (j > distToSlowDown) {
-                    return distToSlowDown;
-                }
-                else if ((movement.get(j) == Movement.LEFT || movement.get(j) == Movement.RIGHT)) {
-                    return j;
-                }
+    private boolean isAnytimeSearchAffected(MyAIController carController) {
+        GameMap gameMap = carController.getLatestGameMap();
+        ResumableSearch search = carController.getResumableSearch();
+        for (int i = 0; i < gameMap.getChangedCellCount(); i++) {
+            if (search.isAffectedBy(gameMap.getChangedCell(i))) {
+                return true;
+            }
+        }
+        return isChangedOnPath(gameMap);
+    }
+
+    /**
+     * @param gameMap
+     * @return true if a tile changed by the last updateMap is on the path being followed
+     */
+    protected boolean isChangedOnPath(GameMap gameMap) {
+        if (path == null || gameMap.getChangedCellCount() == 0) {
+            return false;
+        }
+        for (Node node : path) {
+            if (gameMap.getCellVersion(node.getX(), node.getY()) > gameMap.getVersion()
+                    - gameMap.getChangedCellCount()) {
+                return true;
             }
         }
-        return i;
+        return false;
+    }
+
+    public ArrayList<MapTile> getTilesToAvoid() {
+        return tilesToAvoid;
+    }
+
+    /**
+     * compile the path into the plan the car follows, with speeds from the controller's limits
+     * @param carController
+     */
+    protected void compilePlan(MyAIController carController) {
+        if (plannedPath != path) {
+            plan = MotionPlan.compile(path);
+            plannedPath = path;
+        }
+        plan.setSpeedProfile(carController.MAX_CAR_SPEED, carController.MAX_TURNING_SPEED,
+                carController.MIN_CORNER_SPEED, carController.DISTANCE_TO_SLOW_DOWN);
+    }
+
+    /**
+     * move along the plan as the car crosses cells, turn where it turns and keep to its speed profile
+     * @param carController
+     * @return
+     */
+    public CarControllerActions determineState(MyAIController carController) {
+        Coordinate position = carController.getCurrentPosition();
+        // off the plan, e.g. pushed aside or past a cell it skipped, the plan's headings no longer lead to the target
+        if (!plan.advance(position.x, position.y) && !plan.isFinished()) {
+            replanFromCar(carController);
+            plan.advance(position.x, position.y);
+        }
+        // no route yet, e.g. an ANYTIME search that hasn't got anywhere
+        if (plan.isFinished()) {
+            return CarControllerActions.SLOWDOWN;
+        }
+
+        // If the car is to immediately turn, decide which way to turn
+        WorldSpatial.RelativeDirection turn = MotionPlan.getTurn(carController.getOrientation(), plan.getHeading());
+        if (turn == WorldSpatial.RelativeDirection.LEFT) {
+            return CarControllerActions.ISTURNINGLEFT;
+        } else if (turn == WorldSpatial.RelativeDirection.RIGHT) {
+            return CarControllerActions.ISTURNINGRIGHT;
+        }
+
+        float targetSpeed = plan.getTargetSpeed();
+        if (carController.getSpeed() <= targetSpeed) {
+            return CarControllerActions.ACCELERATE;
+        }
+        //SLOWDOWN settles at the turning speed, anything slower needs the brakes
+        return targetSpeed >= carController.MAX_TURNING_SPEED ? CarControllerActions.SLOWDOWN
+                : CarControllerActions.REVERSE;
     }
 }
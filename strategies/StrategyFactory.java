@@ -61,6 +61,10 @@ public class StrategyFactory {
 			currentStrategyName = MyAIController.Strategies.GOTHROUGHLAVA;
 			newStrategy = new GoThroughLavaStrategy(this, tileFollowingSensitivity, distToSlowDown);
 			break;
+		case EXPLOREFRONTIER:
+			currentStrategyName = MyAIController.Strategies.EXPLOREFRONTIER;
+			newStrategy = new FrontierExplorerStrategy();
+			break;
 		default:
 			break;
 		}